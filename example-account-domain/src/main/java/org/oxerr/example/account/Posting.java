@@ -0,0 +1,4 @@
+package org.oxerr.example.account;
+
+public record Posting(long accountId, long amount) {
+}
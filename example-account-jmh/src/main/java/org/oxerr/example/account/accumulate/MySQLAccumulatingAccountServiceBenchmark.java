@@ -0,0 +1,106 @@
+package org.oxerr.example.account.accumulate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.accumulate.AccumulatingAccountService;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Small credits to a few hot accounts, added through each, or accumulated and
+ * flushed in one add per account.
+ */
+@State(Scope.Benchmark)
+@Threads(64)
+public class MySQLAccumulatingAccountServiceBenchmark {
+
+	private static final long COUNT = 1_000;
+
+	@Param({ "versioned", "database-lock" })
+	private String strategy;
+
+	@Param({ "none", "accumulating" })
+	private String mode;
+
+	@Param({ "10", "1000" })
+	private long hotAccounts;
+
+	private AccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		final AbstractJDBCAccountService jdbcAccountService = switch (this.strategy) {
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			case "database-lock" -> new DatabaseLockAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + this.strategy);
+		};
+
+		this.accountService = switch (this.mode) {
+			case "none" -> jdbcAccountService;
+			case "accumulating" -> new AccumulatingAccountService(jdbcAccountService);
+			default -> throw new IllegalArgumentException("Unknown mode: " + this.mode);
+		};
+
+		// Initialize
+		if (jdbcAccountService.count() < COUNT) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, COUNT);
+			}
+		}
+	}
+
+	@Benchmark
+	public Object testAddAmount() {
+		return this.accountService.addAmount(ThreadLocalRandom.current().nextLong(1, this.hotAccounts + 1), 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		// Flushes the pending amounts before the pool is closed.
+		if (this.accountService instanceof AccumulatingAccountService accumulatingAccountService) {
+			accumulatingAccountService.close();
+		}
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH for accumulating implementation.
+ */
+package org.oxerr.example.account.accumulate;
@@ -0,0 +1,121 @@
+package org.oxerr.example.account.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.AsyncAccountService;
+import org.oxerr.example.account.service.ExecutorAsyncAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Issues {@value #CONCURRENCY} calls per invocation, one after another on the
+ * blocking service, all at once on the asynchronous service.
+ */
+@State(Scope.Benchmark)
+public class MySQLAsyncAccountServiceBenchmark implements AutoCloseable {
+
+	private static final int CONCURRENCY = 100;
+
+	private final AccountService accountService;
+
+	private final AsyncAccountService asyncAccountService;
+
+	private final ExecutorService executorService;
+
+	private final HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	public MySQLAsyncAccountServiceBenchmark() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		final var versionedAccountService = new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+		this.accountService = versionedAccountService;
+
+		// Bounded by the connection pool size.
+		this.executorService = Executors.newFixedThreadPool(this.dataSource.getMaximumPoolSize());
+		this.asyncAccountService = new ExecutorAsyncAccountService(this.accountService, this.executorService);
+
+		// Initialize
+		final long count = 1_000_000;
+		if (versionedAccountService.count() < count) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONCURRENCY)
+	public void testGet() {
+		for (long id = 1; id <= CONCURRENCY; id++) {
+			this.accountService.get(id);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONCURRENCY)
+	public void testGetAsync() {
+		final var futures = new CompletableFuture<?>[CONCURRENCY];
+		for (int i = 0; i < CONCURRENCY; i++) {
+			futures[i] = this.asyncAccountService.get(i + 1L).toCompletableFuture();
+		}
+		CompletableFuture.allOf(futures).join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONCURRENCY)
+	public void testAddAmount() {
+		for (long id = 1; id <= CONCURRENCY; id++) {
+			this.accountService.addAmount(id, 1);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CONCURRENCY)
+	public void testAddAmountAsync() {
+		final var futures = new CompletableFuture<?>[CONCURRENCY];
+		for (int i = 0; i < CONCURRENCY; i++) {
+			futures[i] = this.asyncAccountService.addAmount(i + 1L, 1).toCompletableFuture();
+		}
+		CompletableFuture.allOf(futures).join();
+	}
+
+	@TearDown
+	@Override
+	public void close() {
+		this.executorService.shutdown();
+		this.dataSource.close();
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH for blocking versus asynchronous account service.
+ */
+package org.oxerr.example.account.async;
@@ -0,0 +1,4 @@
+/**
+ * JMH for group commit implementation.
+ */
+package org.oxerr.example.account.batch;
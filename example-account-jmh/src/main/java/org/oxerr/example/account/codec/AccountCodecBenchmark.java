@@ -0,0 +1,39 @@
+package org.oxerr.example.account.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.jdbc.AccountCodec;
+
+@State(Scope.Benchmark)
+public class AccountCodecBenchmark {
+
+	@Param({ "json", "binary" })
+	private String codecName;
+
+	private final Account account = new Account(1_000_000L, 123_456_789L, 32_767L);
+
+	private AccountCodec codec;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() {
+		this.codec = AccountCodecs.getAccountCodec(this.codecName);
+		this.encoded = this.codec.encode(this.account);
+	}
+
+	@Benchmark
+	public byte[] testEncode() {
+		return this.codec.encode(this.account);
+	}
+
+	@Benchmark
+	public Account testDecode() {
+		return this.codec.decode(this.encoded);
+	}
+
+}
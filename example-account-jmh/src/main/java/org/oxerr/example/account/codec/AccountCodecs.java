@@ -0,0 +1,30 @@
+package org.oxerr.example.account.codec;
+
+import org.oxerr.example.account.service.jdbc.AccountCodec;
+import org.oxerr.example.account.service.jdbc.BinaryAccountCodec;
+import org.oxerr.example.account.service.jdbc.CacheLayout;
+import org.oxerr.example.account.service.jdbc.JsonAccountCodec;
+import org.oxerr.example.account.service.jdbc.SortedSetCacheLayout;
+
+final class AccountCodecs {
+
+	private AccountCodecs() {
+	}
+
+	static AccountCodec getAccountCodec(final String name) {
+		return switch (name) {
+			case "json" -> new JsonAccountCodec();
+			case "binary" -> new BinaryAccountCodec();
+			default -> throw new IllegalArgumentException("Unknown codec: " + name);
+		};
+	}
+
+	/**
+	 * Values of different codecs can not share a key, so each codec caches
+	 * under its own key prefix, apart from the other benchmarks.
+	 */
+	static CacheLayout getCacheLayout(final String name) {
+		return new SortedSetCacheLayout("codec:" + name + ":");
+	}
+
+}
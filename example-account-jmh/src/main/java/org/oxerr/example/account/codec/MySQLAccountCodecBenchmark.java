@@ -0,0 +1,74 @@
+package org.oxerr.example.account.codec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+@State(Scope.Benchmark)
+public class MySQLAccountCodecBenchmark {
+
+	@Param({ "json", "binary" })
+	private String codecName;
+
+	private VersionedAccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+		this.accountService.setCodec(AccountCodecs.getAccountCodec(this.codecName));
+		this.accountService.setCacheLayout(AccountCodecs.getCacheLayout(this.codecName));
+
+		// Initialize
+		final long count = 1_000_000;
+		if (this.accountService.count() < count) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+	}
+
+	@Benchmark
+	public Account testGet() {
+		return this.accountService.get(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.dataSource.close();
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH for cached value codecs.
+ */
+package org.oxerr.example.account.codec;
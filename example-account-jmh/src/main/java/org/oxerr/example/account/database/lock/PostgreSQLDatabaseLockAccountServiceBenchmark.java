@@ -5,9 +5,10 @@ import org.apache.logging.log4j.Logger;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
+import org.oxerr.example.account.AccountLoader;
 import org.oxerr.example.account.JedisClusterFactory;
 import org.oxerr.example.account.JedisPoolFactory;
-import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
 
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -26,7 +27,7 @@ public class PostgreSQLDatabaseLockAccountServiceBenchmark implements AutoClosea
 	private JedisCluster jedisCluster;
 
 	public PostgreSQLDatabaseLockAccountServiceBenchmark() {
-		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+		this.dataSource = new PostreSQLDataSourceFactory().getDataSource();
 
 		try {
 			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
@@ -39,7 +40,9 @@ public class PostgreSQLDatabaseLockAccountServiceBenchmark implements AutoClosea
 		// Initialize
 		final long count = 1_000_000;
 		if (this.accountService.count() < count) {
-			this.accountService.newAccounts(1, count, Short.MAX_VALUE);
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
 		}
 	}
 
@@ -53,6 +56,11 @@ public class PostgreSQLDatabaseLockAccountServiceBenchmark implements AutoClosea
 		this.accountService.addAmount(1L, 1);
 	}
 
+	@Benchmark
+	public void testTransfer() {
+		this.accountService.transfer(1L, 2L, 1);
+	}
+
 	@Override
 	public void close() {
 		this.dataSource.close();
@@ -0,0 +1,28 @@
+package org.oxerr.example.account.layout;
+
+import org.oxerr.example.account.service.jdbc.CacheLayout;
+import org.oxerr.example.account.service.jdbc.HashCacheLayout;
+import org.oxerr.example.account.service.jdbc.SortedSetCacheLayout;
+import org.oxerr.example.account.service.jdbc.StringCacheLayout;
+
+final class CacheLayouts {
+
+	private CacheLayouts() {
+	}
+
+	/**
+	 * Returns the layout of the name, with keys of its own prefix, so the
+	 * accounts cached by it are not read by the other benchmarks.
+	 */
+	static CacheLayout getCacheLayout(final String name) {
+		final var keyPrefix = "layout:" + name + ":";
+
+		return switch (name) {
+			case "sorted-set" -> new SortedSetCacheLayout(keyPrefix);
+			case "string" -> new StringCacheLayout(keyPrefix);
+			case "hash" -> new HashCacheLayout(keyPrefix);
+			default -> throw new IllegalArgumentException("Unknown layout: " + name);
+		};
+	}
+
+}
@@ -0,0 +1,75 @@
+package org.oxerr.example.account.layout;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.oxerr.example.account.service.jdbc.CacheLayout;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Measures the Redis memory used by the cached accounts.
+ */
+final class CacheMemory {
+
+	private static final String USED_MEMORY = "used_memory:";
+
+	private CacheMemory() {
+	}
+
+	/**
+	 * Returns the used memory in bytes, of all the nodes in cluster mode.
+	 */
+	static long getUsedMemory(final JedisPool jedisPool, final JedisCluster jedisCluster) {
+		if (jedisPool != null) {
+			try (final var jedis = jedisPool.getResource()) {
+				return getUsedMemory(jedis);
+			}
+		}
+
+		long usedMemory = 0;
+		for (final var pool : jedisCluster.getClusterNodes().values()) {
+			try (final var jedis = pool.getResource()) {
+				usedMemory += getUsedMemory(jedis);
+			}
+		}
+		return usedMemory;
+	}
+
+	/**
+	 * Deletes the keys of the accounts with IDs from {@code from} to
+	 * {@code to}, inclusive.
+	 */
+	static void delete(
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster,
+		final CacheLayout cacheLayout,
+		final long from,
+		final long to
+	) {
+		final Set<String> keys = new LinkedHashSet<>();
+		for (long id = from; id <= to; id++) {
+			keys.add(SafeEncoder.encode(cacheLayout.getKey(id)));
+		}
+
+		if (jedisPool != null) {
+			try (final var jedis = jedisPool.getResource(); final var pipeline = jedis.pipelined()) {
+				keys.forEach(pipeline::del);
+			}
+		} else {
+			keys.forEach(jedisCluster::del);
+		}
+	}
+
+	private static long getUsedMemory(final Jedis jedis) {
+		return jedis.info("memory").lines()
+			.filter(line -> line.startsWith(USED_MEMORY))
+			.mapToLong(line -> Long.parseLong(line.substring(USED_MEMORY.length()).strip()))
+			.findFirst()
+			.orElseThrow(() -> new IllegalStateException("No used memory in info."));
+	}
+
+}
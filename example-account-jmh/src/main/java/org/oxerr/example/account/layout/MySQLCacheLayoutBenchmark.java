@@ -0,0 +1,170 @@
+package org.oxerr.example.account.layout;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.BinaryAccountCodec;
+import org.oxerr.example.account.service.jdbc.CacheLayout;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Gets and caches of each cache layout, all with the binary codec, and the
+ * memory per cached account of each layout, reported by {@link #main}.
+ *
+ * <p>Each layout has keys of its own prefix, so the accounts cached by the
+ * other benchmarks, of other codecs, are neither read nor deleted.</p>
+ */
+@State(Scope.Benchmark)
+public class MySQLCacheLayoutBenchmark {
+
+	private static final long COUNT = 1_000_000;
+
+	private static final long HOT_COUNT = 10_000;
+
+	@Param({ "sorted-set", "string", "hash" })
+	private String layoutName;
+
+	private final AtomicLong version = new AtomicLong();
+
+	private CacheLayout cacheLayout;
+
+	private LayoutAccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.cacheLayout = CacheLayouts.getCacheLayout(this.layoutName);
+		this.accountService = new LayoutAccountService(dataSource, jedisPool, jedisCluster);
+		this.accountService.setCacheLayout(this.cacheLayout);
+		this.accountService.setCodec(new BinaryAccountCodec());
+
+		// Initialize
+		if (this.accountService.count() < COUNT) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, COUNT);
+			}
+		}
+	}
+
+	/**
+	 * Gets the hot accounts, cached after their first get, the last ones
+	 * loaded, which the other benchmarks rarely touch.
+	 */
+	@Benchmark
+	public Account testGet() {
+		return this.accountService.get(COUNT - HOT_COUNT + ThreadLocalRandom.current().nextLong(1, HOT_COUNT + 1));
+	}
+
+	/**
+	 * Caches newer versions of accounts which do not exist in the database,
+	 * so the accounts cached by {@link #testGet()} are kept.
+	 */
+	@Benchmark
+	public void testCache() {
+		final long id = COUNT + ThreadLocalRandom.current().nextLong(1, HOT_COUNT + 1);
+		this.accountService.cache(new Account(id, 0, this.version.incrementAndGet()));
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+	/**
+	 * Returns the Redis memory in bytes per account, measured by caching the
+	 * accounts with IDs from 1 to the count, deleted before and after, which
+	 * are only the keys of the prefix of the layout.
+	 */
+	private double getMemoryPerAccount(final long count) {
+		CacheMemory.delete(this.jedisPool, this.jedisCluster, this.cacheLayout, 1, count);
+		final long before = CacheMemory.getUsedMemory(this.jedisPool, this.jedisCluster);
+
+		final int chunkSize = 1_000;
+		for (long from = 1; from <= count; from += chunkSize) {
+			this.accountService.getAll(LongStream.rangeClosed(from, Math.min(count, from + chunkSize - 1)).toArray());
+		}
+
+		final long after = CacheMemory.getUsedMemory(this.jedisPool, this.jedisCluster);
+		CacheMemory.delete(this.jedisPool, this.jedisCluster, this.cacheLayout, 1, count);
+
+		return (double) (after - before) / count;
+	}
+
+	public static void main(String[] args) {
+		Logger log = LogManager.getLogger(MySQLCacheLayoutBenchmark.class);
+
+		final long count = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+
+		for (final var layoutName : List.of("sorted-set", "string", "hash")) {
+			final var benchmark = new MySQLCacheLayoutBenchmark();
+			benchmark.layoutName = layoutName;
+			benchmark.setUp();
+
+			try {
+				log.info("{}: {} bytes per account.", () -> layoutName, () -> String.format("%.1f", benchmark.getMemoryPerAccount(count)));
+			} finally {
+				benchmark.tearDown();
+			}
+		}
+	}
+
+	/**
+	 * Exposes caching, which is otherwise only done after reads and updates.
+	 */
+	private static class LayoutAccountService extends VersionedAccountService {
+
+		LayoutAccountService(final DataSource dataSource, final JedisPool jedisPool, final JedisCluster jedisCluster) {
+			super(dataSource, jedisPool, jedisCluster);
+		}
+
+		@Override
+		protected void cache(final Account account) {
+			super.cache(account);
+		}
+
+	}
+
+}
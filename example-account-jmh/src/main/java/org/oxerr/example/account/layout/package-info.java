@@ -0,0 +1,4 @@
+/**
+ * JMH for cached value layouts.
+ */
+package org.oxerr.example.account.layout;
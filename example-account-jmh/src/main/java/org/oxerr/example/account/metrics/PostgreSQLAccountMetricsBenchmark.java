@@ -0,0 +1,105 @@
+package org.oxerr.example.account.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.AccountMetricsTrackerFactory;
+import org.oxerr.example.account.service.jdbc.HistogramAccountMetrics;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Gets and updates with the metrics off and on, the overhead of the metrics
+ * is the difference of the scores. The metrics recorded are logged on tear
+ * down.
+ */
+@State(Scope.Benchmark)
+public class PostgreSQLAccountMetricsBenchmark {
+
+	private final Logger log = LogManager.getLogger(PostgreSQLAccountMetricsBenchmark.class);
+
+	@Param({ "off", "on" })
+	private String metricsEnabled;
+
+	private HistogramAccountMetrics metrics;
+
+	private VersionedAccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		final var hikariConfig = new PostreSQLDataSourceFactory().getHikariConfig();
+
+		if (this.metricsEnabled.equals("on")) {
+			this.metrics = new HistogramAccountMetrics();
+			hikariConfig.setMetricsTrackerFactory(new AccountMetricsTrackerFactory(this.metrics));
+		}
+
+		this.dataSource = new HikariDataSource(hikariConfig);
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+		this.accountService.setMetrics(this.metrics);
+
+		// Initialize
+		final long count = 1_000_000;
+		if (this.accountService.count() < count) {
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+	}
+
+	@Benchmark
+	public Account testGet() {
+		return this.accountService.get(1L);
+	}
+
+	@Benchmark
+	public Account testAddAmount() {
+		return this.accountService.addAmount(1L, 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.metrics != null) {
+			this.metrics.getLatencies().forEach((phase, latency) -> log.info("{} latencies in microseconds: {}", phase, latency));
+			log.info("Cache hit ratio: {}, retries: {}.", this.metrics.getCacheHitRatio(), this.metrics.getRetries());
+		}
+
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
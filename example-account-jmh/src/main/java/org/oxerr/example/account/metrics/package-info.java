@@ -0,0 +1,4 @@
+/**
+ * JMH for the overhead of the account service metrics.
+ */
+package org.oxerr.example.account.metrics;
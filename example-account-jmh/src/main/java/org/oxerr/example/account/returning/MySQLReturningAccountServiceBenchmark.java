@@ -0,0 +1,111 @@
+package org.oxerr.example.account.returning;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.returning.ReturningAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * The update returning the account, against the versioned service, which
+ * reads the account then updates it, two round trips at least.
+ */
+@State(Scope.Benchmark)
+public class MySQLReturningAccountServiceBenchmark implements AutoCloseable {
+
+	@Param({ "returning", "versioned" })
+	private String strategy;
+
+	private AbstractJDBCAccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new MySQLDataSourceFactory().getMultiQueriesDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = getAccountService(this.strategy, this.dataSource, this.jedisPool, this.jedisCluster);
+
+		// Initialize
+		final long count = 1_000_000;
+		if (this.accountService.count() < count) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+	}
+
+	@Benchmark
+	public void testAddAmount() {
+		this.accountService.addAmount(1L, 1);
+	}
+
+	@Benchmark
+	public void testTransfer() {
+		this.accountService.transfer(1L, 2L, 1);
+	}
+
+	@TearDown
+	@Override
+	public void close() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+	static AbstractJDBCAccountService getAccountService(
+		final String strategy,
+		final HikariDataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		return switch (strategy) {
+			case "returning" -> new ReturningAccountService(dataSource, jedisPool, jedisCluster);
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+		};
+	}
+
+	public static void main(String[] args) {
+		Logger log = LogManager.getLogger(MySQLReturningAccountServiceBenchmark.class);
+
+		try (final var benchmark = new MySQLReturningAccountServiceBenchmark()) {
+			benchmark.strategy = "returning";
+			benchmark.setUp();
+			var account = benchmark.accountService.addAmount(1, 1);
+			log.info("account: {}", account);
+		}
+	}
+
+}
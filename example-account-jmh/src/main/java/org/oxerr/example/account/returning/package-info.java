@@ -0,0 +1,5 @@
+/**
+ * JMH for single statement update implementation, against the versioned
+ * one.
+ */
+package org.oxerr.example.account.returning;
@@ -0,0 +1,4 @@
+/**
+ * JMH for hot account sharding.
+ */
+package org.oxerr.example.account.sharded;
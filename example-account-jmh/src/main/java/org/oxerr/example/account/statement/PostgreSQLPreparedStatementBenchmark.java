@@ -0,0 +1,159 @@
+package org.oxerr.example.account.statement;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.Embedded;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Reads and updates through the database, with the prepared statements
+ * cached or not.
+ */
+@State(Scope.Benchmark)
+public class PostgreSQLPreparedStatementBenchmark {
+
+	private static final String VERIFY_SQL = "select available, version from account where id = ?";
+
+	private static final int VERIFY_EXECUTIONS = 10;
+
+	private final Logger log = LogManager.getLogger(PostgreSQLPreparedStatementBenchmark.class);
+
+	@Param({ "off", "on" })
+	private String cache;
+
+	private StatementAccountService accountService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() throws SQLException {
+		final var hikariConfig = new PostreSQLDataSourceFactory().getHikariConfig();
+
+		if (this.cache.equals("off")) {
+			hikariConfig.addDataSourceProperty("prepareThreshold", "0");
+			hikariConfig.addDataSourceProperty("preparedStatementCacheQueries", "0");
+		}
+
+		this.dataSource = new HikariDataSource(hikariConfig);
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = new StatementAccountService(dataSource, jedisPool, jedisCluster);
+
+		// Initialize
+		final long count = 1_000_000;
+		if (this.accountService.count() < count) {
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+
+		// The embedded database has no server side statements.
+		if (!Embedded.isEnabled()) {
+			this.verifyStatementCache();
+		}
+	}
+
+	/**
+	 * Logs whether the statements are prepared on the server once and then
+	 * only executed, as {@code pg_prepared_statements} lists them on a
+	 * connection of the pool, and fails when the cache is on but they are
+	 * not.
+	 */
+	private void verifyStatementCache() throws SQLException {
+		try (final var conn = this.dataSource.getConnection()) {
+			for (int i = 0; i < VERIFY_EXECUTIONS; i++) {
+				try (final var select = conn.prepareStatement(VERIFY_SQL)) {
+					select.setLong(1, 1L);
+					select.executeQuery().close();
+				}
+			}
+
+			final long prepared;
+
+			try (
+				final var stmt = conn.createStatement();
+				final var rs = stmt.executeQuery("select count(*) from pg_prepared_statements where statement = 'select available, version from account where id = $1'");
+			) {
+				rs.next();
+				prepared = rs.getLong(1);
+			}
+
+			log.info("Statement cache {}: {} named statements prepared on the server.", this.cache, prepared);
+
+			if (this.cache.equals("on") && prepared != 1) {
+				throw new IllegalStateException("Statements are not cached on the server.");
+			}
+		}
+	}
+
+	@Benchmark
+	public Account testGetViaJDBC() {
+		return this.accountService.getViaJDBC(1L);
+	}
+
+	@Benchmark
+	public Account testAddAmount() {
+		return this.accountService.addAmount(1L, 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+	/**
+	 * Exposes the read through the database, which is otherwise behind the
+	 * cache.
+	 */
+	private static class StatementAccountService extends DatabaseLockAccountService {
+
+		StatementAccountService(final DataSource dataSource, final JedisPool jedisPool, final JedisCluster jedisCluster) {
+			super(dataSource, jedisPool, jedisCluster);
+		}
+
+		@Override
+		protected Account getViaJDBC(final long id) {
+			return super.getViaJDBC(id);
+		}
+
+	}
+
+}
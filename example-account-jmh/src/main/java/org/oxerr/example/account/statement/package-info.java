@@ -0,0 +1,4 @@
+/**
+ * JMH for prepared statement caching.
+ */
+package org.oxerr.example.account.statement;
@@ -0,0 +1,110 @@
+package org.oxerr.example.account.striped;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.ZipfianGenerator;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.StripedLockAccountService;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Contended writers, with and without the striped lock, on uniform and
+ * Zipfian distributed account IDs.
+ */
+@State(Scope.Benchmark)
+@Threads(64)
+public class PostgreSQLStripedLockAccountServiceBenchmark {
+
+	private static final long COUNT = 1_000_000;
+
+	@Param({ "versioned", "database-lock" })
+	private String strategy;
+
+	@Param({ "none", "striped" })
+	private String lock;
+
+	@Param({ "uniform", "zipfian" })
+	private String distribution;
+
+	private AccountService accountService;
+
+	private LongSupplier ids;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new PostreSQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		final AbstractJDBCAccountService jdbcAccountService = switch (this.strategy) {
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			case "database-lock" -> new DatabaseLockAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + this.strategy);
+		};
+
+		this.accountService = switch (this.lock) {
+			case "none" -> jdbcAccountService;
+			case "striped" -> new StripedLockAccountService(jdbcAccountService);
+			default -> throw new IllegalArgumentException("Unknown lock: " + this.lock);
+		};
+
+		this.ids = switch (this.distribution) {
+			case "uniform" -> () -> ThreadLocalRandom.current().nextLong(1, COUNT + 1);
+			case "zipfian" -> new ZipfianGenerator(COUNT)::next;
+			default -> throw new IllegalArgumentException("Unknown distribution: " + this.distribution);
+		};
+
+		// Initialize
+		if (jdbcAccountService.count() < COUNT) {
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, COUNT);
+			}
+		}
+	}
+
+	@Benchmark
+	public void testAddAmount() {
+		this.accountService.addAmount(this.ids.getAsLong(), 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.dataSource.close();
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
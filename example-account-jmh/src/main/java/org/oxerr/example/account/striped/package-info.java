@@ -0,0 +1,4 @@
+/**
+ * JMH for striped lock implementation.
+ */
+package org.oxerr.example.account.striped;
@@ -1,12 +1,17 @@
 package org.oxerr.example.account.versioned;
 
+import java.time.Duration;
+import java.util.stream.LongStream;
+
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
 import org.oxerr.example.account.JedisClusterFactory;
 import org.oxerr.example.account.JedisPoolFactory;
-import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.NearCache;
 
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -16,8 +21,12 @@ import redis.clients.jedis.JedisPool;
 @State(Scope.Benchmark)
 public class PostgreSQLAccountServiceBenchmark implements AutoCloseable {
 
+	private final long[] ids = LongStream.rangeClosed(1, 100).toArray();
+
 	private final JMHVersionedAccountService accountService;
 
+	private final JMHVersionedAccountService nearCachedAccountService;
+
 	private final HikariDataSource dataSource;
 
 	private JedisPool jedisPool;
@@ -25,7 +34,7 @@ public class PostgreSQLAccountServiceBenchmark implements AutoCloseable {
 	private JedisCluster jedisCluster;
 
 	public PostgreSQLAccountServiceBenchmark() {
-		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+		this.dataSource = new PostreSQLDataSourceFactory().getDataSource();
 
 		try {
 			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
@@ -35,10 +44,15 @@ public class PostgreSQLAccountServiceBenchmark implements AutoCloseable {
 
 		this.accountService = new JMHVersionedAccountService(dataSource, jedisPool, jedisCluster);
 
+		this.nearCachedAccountService = new JMHVersionedAccountService(dataSource, jedisPool, jedisCluster);
+		this.nearCachedAccountService.setNearCache(new NearCache(10_000, Duration.ofSeconds(1)));
+
 		// Initialize
 		final long count = 1_000_000;
 		if (this.accountService.count() < count) {
-			this.accountService.newAccounts(1, count, Short.MAX_VALUE);
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
 		}
 	}
 
@@ -47,6 +61,16 @@ public class PostgreSQLAccountServiceBenchmark implements AutoCloseable {
 		this.accountService.get(1L);
 	}
 
+	@Benchmark
+	public void testGetAll() {
+		this.accountService.getAll(this.ids);
+	}
+
+	@Benchmark
+	public void testGetViaNearCache() {
+		this.nearCachedAccountService.get(1L);
+	}
+
 	@Benchmark
 	public void testGetViaJDBC() {
 		this.accountService.getViaJDBC(1L);
@@ -57,6 +81,11 @@ public class PostgreSQLAccountServiceBenchmark implements AutoCloseable {
 		this.accountService.addAmount(1L, 1);
 	}
 
+	@Benchmark
+	public void testTransfer() {
+		this.accountService.transfer(1L, 2L, 1);
+	}
+
 	@Benchmark
 	public void testCache() {
 		this.accountService.cache(new Account(1L, 0, 0));
@@ -0,0 +1,177 @@
+package org.oxerr.example.account.virtual;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.LongConsumer;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.ExecutorServiceFactory;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Drives {@value #CALLERS} concurrent callers per invocation, each on its own
+ * virtual thread, or on a platform thread pool as large as the connection pool.
+ *
+ * <p>The p99 latency of the calls is logged at the end of each iteration,
+ * over all its invocations, and at the end of the run, over all the
+ * measurement iterations.</p>
+ *
+ * <p>Virtual threads need Java 21 or later, {@code make benchmarks} only runs
+ * the virtual threads on such a Java, else add
+ * {@code -p threads=platform}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Threads(1)
+@Fork(jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+public class PostgreSQLVirtualThreadAccountServiceBenchmark {
+
+	private static final int CALLERS = 10_000;
+
+	private final Logger log = LogManager.getLogger(PostgreSQLVirtualThreadAccountServiceBenchmark.class);
+
+	@Param({ "versioned", "database-lock" })
+	private String strategy;
+
+	@Param({ "platform", "virtual" })
+	private String threads;
+
+	private final Recorder latencies = new Recorder(3);
+
+	private final Histogram totalLatencies = new Histogram(3);
+
+	private AbstractJDBCAccountService accountService;
+
+	private ExecutorService executorService;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		final var executorServiceFactory = new ExecutorServiceFactory();
+
+		// Fails before connecting, with the way out.
+		if (this.threads.equals("virtual") && !executorServiceFactory.isVirtualThreadSupported()) {
+			throw new UnsupportedOperationException(String.format(
+				"Virtual threads need Java 21 or later, running on Java %s, run with -p threads=platform.",
+				Runtime.version()
+			));
+		}
+
+		this.dataSource = new PostreSQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = switch (this.strategy) {
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			case "database-lock" -> new DatabaseLockAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + this.strategy);
+		};
+
+		this.executorService = switch (this.threads) {
+			case "platform" -> executorServiceFactory.getPlatformThreadExecutorService(this.dataSource.getMaximumPoolSize());
+			case "virtual" -> executorServiceFactory.getVirtualThreadExecutorService();
+			default -> throw new IllegalArgumentException("Unknown threads: " + this.threads);
+		};
+
+		// Initialize
+		final long count = 1_000_000;
+		if (this.accountService.count() < count) {
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, count);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CALLERS)
+	public void testGet() {
+		this.run(id -> this.accountService.get(id));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CALLERS)
+	public void testAddAmount() {
+		this.run(id -> this.accountService.addAmount(id, 1));
+	}
+
+	@TearDown(Level.Iteration)
+	public void logLatency(final IterationParams iterationParams) {
+		final var iterationLatencies = this.latencies.getIntervalHistogram();
+		log.info("{}/{} p99: {} us", this.strategy, this.threads, iterationLatencies.getValueAtPercentile(99) / 1_000);
+
+		if (iterationParams.getType() == IterationType.MEASUREMENT) {
+			this.totalLatencies.add(iterationLatencies);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		log.info("{}/{} p99 of the run: {} us", this.strategy, this.threads, this.totalLatencies.getValueAtPercentile(99) / 1_000);
+
+		if (this.executorService != null) {
+			this.executorService.shutdown();
+		}
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+	private void run(final LongConsumer call) {
+		final var futures = new CompletableFuture<?>[CALLERS];
+
+		for (int i = 0; i < CALLERS; i++) {
+			final int caller = i;
+			final long start = System.nanoTime();
+			futures[i] = CompletableFuture.runAsync(() -> {
+				call.accept(caller % 1_000 + 1L);
+				this.latencies.recordValue(System.nanoTime() - start);
+			}, this.executorService);
+		}
+
+		CompletableFuture.allOf(futures).join();
+	}
+
+}
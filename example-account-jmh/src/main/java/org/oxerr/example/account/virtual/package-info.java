@@ -0,0 +1,4 @@
+/**
+ * JMH for virtual thread versus platform thread callers.
+ */
+package org.oxerr.example.account.virtual;
@@ -0,0 +1,96 @@
+package org.oxerr.example.account.warm;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.AccountCacheWarmer;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Time to warm up the cache of all the accounts after Redis is flushed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+public class MySQLAccountCacheWarmerBenchmark {
+
+	private final List<Long> hotIds = LongStream.rangeClosed(1, 1_000).boxed().collect(Collectors.toList());
+
+	private AccountCacheWarmer accountCacheWarmer;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		final var accountService = new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+		this.accountCacheWarmer = new AccountCacheWarmer(accountService);
+
+		// Initialize
+		try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+			new AccountLoader(loaderDataSource).load(1, 1_000_000);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void flush() {
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				jedis.flushDB();
+			}
+		} else {
+			for (final var pool : this.jedisCluster.getClusterNodes().values()) {
+				try (final var jedis = pool.getResource()) {
+					jedis.flushDB();
+				} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+					// Replicas are read only, flushed by their masters.
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public long testWarmUp() {
+		return this.accountCacheWarmer.warmUp(this.hotIds);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.dataSource.close();
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
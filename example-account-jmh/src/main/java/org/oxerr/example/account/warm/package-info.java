@@ -0,0 +1,4 @@
+/**
+ * JMH for cache warm-up.
+ */
+package org.oxerr.example.account.warm;
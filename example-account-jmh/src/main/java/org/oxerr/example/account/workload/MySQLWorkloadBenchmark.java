@@ -0,0 +1,121 @@
+package org.oxerr.example.account.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Mixed gets, adds and transfers of the account IDs in a distribution, with
+ * the throughput and the sampled latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Threads(64)
+public class MySQLWorkloadBenchmark {
+
+	@Param({ "versioned", "database-lock", "returning" })
+	private String strategy;
+
+	@Param({ "uniform", "zipfian", "hotset" })
+	private String distribution;
+
+	/**
+	 * The fraction of the operations which are gets.
+	 */
+	@Param({ "0.5", "0.9", "0.99" })
+	private double readRatio;
+
+	/**
+	 * The fraction of the writes which are transfers, the others are adds.
+	 */
+	@Param({ "0", "0.1" })
+	private double transferRatio;
+
+	private AbstractJDBCAccountService accountService;
+
+	private LongSupplier ids;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		final var dataSourceFactory = new MySQLDataSourceFactory();
+		this.dataSource = this.strategy.equals("returning")
+			? dataSourceFactory.getMultiQueriesDataSource()
+			: dataSourceFactory.getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = Workloads.getAccountService(this.strategy, dataSource, jedisPool, jedisCluster);
+		this.ids = Workloads.getIds(this.distribution);
+
+		// Initialize
+		if (this.accountService.count() < Workloads.COUNT) {
+			try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, Workloads.COUNT);
+			}
+		}
+	}
+
+	@Benchmark
+	public Object testMixed() {
+		final var random = ThreadLocalRandom.current();
+		final long id = this.ids.getAsLong();
+
+		if (random.nextDouble() < this.readRatio) {
+			return this.accountService.get(id);
+		}
+
+		if (random.nextDouble() < this.transferRatio) {
+			long to;
+			do {
+				to = this.ids.getAsLong();
+			} while (to == id);
+
+			return this.accountService.transfer(id, to, 1);
+		}
+
+		return this.accountService.addAmount(id, 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
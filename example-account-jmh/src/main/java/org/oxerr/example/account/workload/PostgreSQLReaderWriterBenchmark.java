@@ -0,0 +1,101 @@
+package org.oxerr.example.account.workload;
+
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Readers and writers in separate threads, seven readers per writer, so the
+ * latencies of the gets and the adds under the same load are told apart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@Threads(64)
+public class PostgreSQLReaderWriterBenchmark {
+
+	@Param({ "versioned", "database-lock", "returning" })
+	private String strategy;
+
+	@Param({ "uniform", "zipfian", "hotset" })
+	private String distribution;
+
+	private AbstractJDBCAccountService accountService;
+
+	private LongSupplier ids;
+
+	private HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	@Setup
+	public void setUp() {
+		this.dataSource = new PostreSQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = Workloads.getAccountService(this.strategy, dataSource, jedisPool, jedisCluster);
+		this.ids = Workloads.getIds(this.distribution);
+
+		// Initialize
+		if (this.accountService.count() < Workloads.COUNT) {
+			try (final var loaderDataSource = new PostreSQLDataSourceFactory().getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, Workloads.COUNT);
+			}
+		}
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(7)
+	public Account testGet() {
+		return this.accountService.get(this.ids.getAsLong());
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public Account testAddAmount() {
+		return this.accountService.addAmount(this.ids.getAsLong(), 1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.dataSource != null) {
+			this.dataSource.close();
+		}
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.oxerr.example.account.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import javax.sql.DataSource;
+
+import org.oxerr.example.account.ZipfianGenerator;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.returning.ReturningAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+final class Workloads {
+
+	/**
+	 * The number of accounts seeded.
+	 */
+	static final long COUNT = 1_000_000;
+
+	/**
+	 * The hot set is the first hundredth of the accounts, which takes nine
+	 * tenths of the operations, like the hotspot distribution of YCSB.
+	 */
+	private static final long HOT_COUNT = COUNT / 100;
+
+	private static final double HOT_OPERATION_FRACTION = 0.9;
+
+	private Workloads() {
+	}
+
+	static AbstractJDBCAccountService getAccountService(
+		final String strategy,
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		return switch (strategy) {
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			case "database-lock" -> new DatabaseLockAccountService(dataSource, jedisPool, jedisCluster);
+			case "returning" -> new ReturningAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+		};
+	}
+
+	/**
+	 * Returns the generator of account IDs, from 1 to {@link #COUNT}.
+	 */
+	static LongSupplier getIds(final String distribution) {
+		return switch (distribution) {
+			case "uniform" -> () -> ThreadLocalRandom.current().nextLong(1, COUNT + 1);
+			case "zipfian" -> new ZipfianGenerator(COUNT)::next;
+			case "hotset" -> () -> {
+				final var random = ThreadLocalRandom.current();
+				return random.nextDouble() < HOT_OPERATION_FRACTION
+					? random.nextLong(1, HOT_COUNT + 1)
+					: random.nextLong(HOT_COUNT + 1, COUNT + 1);
+			};
+			default -> throw new IllegalArgumentException("Unknown distribution: " + distribution);
+		};
+	}
+
+}
@@ -0,0 +1,8 @@
+/**
+ * JMH for mixed workloads over all the accounts.
+ *
+ * <p>The parameters take hours together, so these are left out of
+ * {@code make benchmarks}, and run by {@code make workload}, narrow them with
+ * {@code -p} to run a few.</p>
+ */
+package org.oxerr.example.account.workload;
@@ -0,0 +1,80 @@
+package org.oxerr.example.account.write.behind;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.service.write.behind.WriteBehindAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+@State(Scope.Benchmark)
+public class MySQLWriteBehindAccountServiceBenchmark implements AutoCloseable {
+
+	private final WriteBehindAccountService accountService;
+
+	private final HikariDataSource dataSource;
+
+	private JedisPool jedisPool;
+
+	private JedisCluster jedisCluster;
+
+	public MySQLWriteBehindAccountServiceBenchmark() {
+		this.dataSource = new MySQLDataSourceFactory().getDataSource();
+
+		try {
+			this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+		} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+			this.jedisPool = new JedisPoolFactory().getJedisPool();
+		}
+
+		this.accountService = new WriteBehindAccountService(dataSource, jedisPool, jedisCluster);
+
+		// Initialize
+		try (final var loaderDataSource = new MySQLDataSourceFactory().getLoaderDataSource()) {
+			new AccountLoader(loaderDataSource).load(1, 1_000_000);
+		}
+	}
+
+	@Benchmark
+	public void testGet() {
+		this.accountService.get(1L);
+	}
+
+	@Benchmark
+	public void testAddAmount() {
+		this.accountService.addAmount(1L, 1);
+	}
+
+	@TearDown
+	@Override
+	public void close() {
+		this.accountService.close();
+		this.dataSource.close();
+		if (this.jedisPool != null) {
+			this.jedisPool.close();
+		}
+		if (this.jedisCluster != null) {
+			this.jedisCluster.close();
+		}
+	}
+
+	public static void main(String[] args) {
+		Logger log = LogManager.getLogger(MySQLWriteBehindAccountServiceBenchmark.class);
+
+		try (final var benchmark = new MySQLWriteBehindAccountServiceBenchmark()) {
+			var account = benchmark.accountService.addAmount(1, 1);
+			log.info("account: {}", account);
+		}
+	}
+
+}
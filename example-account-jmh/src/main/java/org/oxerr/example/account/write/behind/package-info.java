@@ -0,0 +1,4 @@
+/**
+ * JMH for write-behind implementation.
+ */
+package org.oxerr.example.account.write.behind;
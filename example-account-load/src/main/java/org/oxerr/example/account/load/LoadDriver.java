@@ -0,0 +1,261 @@
+package org.oxerr.example.account.load;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.AccountLoader;
+import org.oxerr.example.account.Embedded;
+import org.oxerr.example.account.ExecutorServiceFactory;
+import org.oxerr.example.account.JedisClusterFactory;
+import org.oxerr.example.account.JedisPoolFactory;
+import org.oxerr.example.account.MySQLDataSourceFactory;
+import org.oxerr.example.account.PostreSQLDataSourceFactory;
+import org.oxerr.example.account.ZipfianGenerator;
+import org.oxerr.example.account.service.database.lock.DatabaseLockAccountService;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.oxerr.example.account.service.versioned.VersionedAccountService;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Ramps the rate of each strategy step by step, until the saturation knee,
+ * and prints the report comparing them.
+ *
+ * <p>Configured by the system properties, with the defaults:</p>
+ *
+ * <pre>
+ * -Ddatabase=mysql                     mysql or postgresql
+ * -Dstrategies=versioned,database-lock versioned, database-lock
+ * -Ddistribution=uniform               uniform or zipfian
+ * -DreadRatio=0.5                      the fraction of the operations which are gets
+ * -Daccounts=1000000                   the number of accounts seeded
+ * -DwarmUpSeconds=10                   at the start rate, for each strategy
+ * -DstepSeconds=10
+ * -DstartRate=500                      operations per second
+ * -DrateIncrement=500
+ * -DmaxRate=50000
+ * -DmaxInFlight=10000
+ * -DobjectiveMillis=10                 of the response time at p99
+ * -DmaxErrorRatio=0.01                 the fraction of the operations which may throw
+ * -DhistogramDir=                      writes the histograms of the steps, if set
+ * </pre>
+ *
+ * <p>A step is past the knee if less than 95% of its target rate completed,
+ * its response time at p99 is over the objective, or more of its operations
+ * threw than the max error ratio, then the ramp of the strategy stops, as the
+ * queue would only grow at higher rates. The errors, such as of a pool timing
+ * out, complete fast, so they would otherwise keep the rate and the response
+ * time of a saturated step within bounds.</p>
+ *
+ * <p>The workers are virtual threads on Java 21 or later, else platform
+ * threads, which cost more memory and scheduling at high rates. Run with
+ * {@code -Dembedded=true} and the jar packaged by the {@code embedded}
+ * profile to try it without services.</p>
+ */
+public class LoadDriver {
+
+	private static final double MIN_RATE_FRACTION = 0.95;
+
+	private static final double PERCENTILE = 99;
+
+	private static final Logger log = LogManager.getLogger(LoadDriver.class);
+
+	private final String database = System.getProperty("database", "mysql");
+
+	private final List<String> strategies = List.of(System.getProperty("strategies", "versioned,database-lock").split(","));
+
+	private final String distribution = System.getProperty("distribution", "uniform");
+
+	private final double readRatio = Double.parseDouble(System.getProperty("readRatio", "0.5"));
+
+	private final long accounts = Long.getLong("accounts", 1_000_000);
+
+	private final Duration warmUp = Duration.ofSeconds(Long.getLong("warmUpSeconds", 10));
+
+	private final Duration step = Duration.ofSeconds(Long.getLong("stepSeconds", 10));
+
+	private final double startRate = Double.parseDouble(System.getProperty("startRate", "500"));
+
+	private final double rateIncrement = Double.parseDouble(System.getProperty("rateIncrement", "500"));
+
+	private final double maxRate = Double.parseDouble(System.getProperty("maxRate", "50000"));
+
+	private final int maxInFlight = Integer.getInteger("maxInFlight", 10_000);
+
+	private final long objectiveNanos = Duration.ofMillis(Long.getLong("objectiveMillis", 10)).toNanos();
+
+	private final double maxErrorRatio = Double.parseDouble(System.getProperty("maxErrorRatio", "0.01"));
+
+	private final String histogramDir = System.getProperty("histogramDir");
+
+	public static void main(String[] args) throws IOException {
+		new LoadDriver().run();
+
+		// The threads of the embedded Redis are not daemons.
+		if (Embedded.isEnabled()) {
+			System.exit(0);
+		}
+	}
+
+	public void run() throws IOException {
+		final var report = new LoadReport();
+
+		try (
+			final var dataSource = this.getDataSource();
+			final var redis = new Redis();
+		) {
+			try (final var loaderDataSource = this.getLoaderDataSource()) {
+				new AccountLoader(loaderDataSource).load(1, this.accounts);
+			}
+
+			final var executorService = getExecutorService();
+			try {
+				final var loadGenerator = new LoadGenerator(executorService, this.maxInFlight);
+
+				for (final var strategy : this.strategies) {
+					final var accountService = getAccountService(strategy, dataSource, redis.jedisPool, redis.jedisCluster);
+					this.ramp(strategy, loadGenerator, this.getOperation(accountService), report);
+				}
+			} finally {
+				executorService.shutdownNow();
+			}
+		}
+
+		report.print(System.out);
+
+		if (this.histogramDir != null) {
+			report.writeHistograms(Path.of(this.histogramDir));
+		}
+	}
+
+	private void ramp(
+		final String strategy,
+		final LoadGenerator loadGenerator,
+		final Runnable operation,
+		final LoadReport report
+	) {
+		log.info("Warming up {} at {}/s for {}.", strategy, this.startRate, this.warmUp);
+		loadGenerator.run(operation, this.startRate, this.warmUp);
+
+		final List<StepResult> steps = new ArrayList<>();
+		var saturated = false;
+
+		for (double rate = this.startRate; rate <= this.maxRate && !saturated; rate += this.rateIncrement) {
+			final var result = loadGenerator.run(operation, rate, this.step);
+			steps.add(result);
+			saturated = result.isSaturated(MIN_RATE_FRACTION, PERCENTILE, this.objectiveNanos, this.maxErrorRatio);
+
+			log.info(
+				"{} at {}/s: {}/s, p99 {} ms, {} errors{}",
+				strategy,
+				rate,
+				String.format("%.1f", result.actualRate()),
+				String.format("%.3f", result.responseTime().getValueAtPercentile(PERCENTILE) / 1_000_000.0),
+				result.errors(),
+				saturated ? ", saturated." : "."
+			);
+		}
+
+		report.add(strategy, steps, saturated);
+	}
+
+	private Runnable getOperation(final AbstractJDBCAccountService accountService) {
+		final LongSupplier ids = switch (this.distribution) {
+			case "uniform" -> () -> ThreadLocalRandom.current().nextLong(1, this.accounts + 1);
+			case "zipfian" -> new ZipfianGenerator(this.accounts)::next;
+			default -> throw new IllegalArgumentException("Unknown distribution: " + this.distribution);
+		};
+
+		return () -> {
+			final long id = ids.getAsLong();
+
+			if (ThreadLocalRandom.current().nextDouble() < this.readRatio) {
+				accountService.get(id);
+			} else {
+				accountService.addAmount(id, 1);
+			}
+		};
+	}
+
+	private HikariDataSource getDataSource() {
+		return switch (this.database) {
+			case "mysql" -> new MySQLDataSourceFactory().getDataSource();
+			case "postgresql" -> new PostreSQLDataSourceFactory().getDataSource();
+			default -> throw new IllegalArgumentException("Unknown database: " + this.database);
+		};
+	}
+
+	private HikariDataSource getLoaderDataSource() {
+		return switch (this.database) {
+			case "mysql" -> new MySQLDataSourceFactory().getLoaderDataSource();
+			case "postgresql" -> new PostreSQLDataSourceFactory().getLoaderDataSource();
+			default -> throw new IllegalArgumentException("Unknown database: " + this.database);
+		};
+	}
+
+	private static AbstractJDBCAccountService getAccountService(
+		final String strategy,
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		return switch (strategy) {
+			case "versioned" -> new VersionedAccountService(dataSource, jedisPool, jedisCluster);
+			case "database-lock" -> new DatabaseLockAccountService(dataSource, jedisPool, jedisCluster);
+			default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+		};
+	}
+
+	private static ExecutorService getExecutorService() {
+		try {
+			return new ExecutorServiceFactory().getVirtualThreadExecutorService();
+		} catch (UnsupportedOperationException e) {
+			log.warn("{} Falling back to platform threads.", e.getMessage());
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * The Redis cluster if there is one, else the standalone Redis.
+	 */
+	private static class Redis implements AutoCloseable {
+
+		private JedisPool jedisPool;
+
+		private JedisCluster jedisCluster;
+
+		Redis() {
+			try {
+				this.jedisCluster = new JedisClusterFactory().getJedisCluster();
+			} catch (redis.clients.jedis.exceptions.JedisDataException e) {
+				this.jedisPool = new JedisPoolFactory().getJedisPool();
+			}
+		}
+
+		@Override
+		public void close() {
+			if (this.jedisPool != null) {
+				this.jedisPool.close();
+			}
+			if (this.jedisCluster != null) {
+				this.jedisCluster.close();
+			}
+		}
+
+	}
+
+}
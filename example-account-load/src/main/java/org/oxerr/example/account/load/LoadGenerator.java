@@ -0,0 +1,134 @@
+package org.oxerr.example.account.load;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Issues operations at a fixed target rate, each on its own worker, whether or
+ * not the previous ones have completed, so a slow operation does not hold
+ * back the ones scheduled after it.
+ *
+ * <p>Each operation has an intended start, on the schedule of the rate, and
+ * its latency is measured from it. A closed-loop benchmark, such as JMH,
+ * waits for each operation before issuing the next one, so the operations
+ * which would have been issued during a stall are never measured, which is
+ * the coordinated omission.</p>
+ *
+ * <p>The operations in flight are bounded, so an overloaded service does not
+ * run the driver out of memory. When the bound is reached, the schedule
+ * falls behind, but the intended starts stay on it, so the waiting is still
+ * counted in the response time.</p>
+ */
+public class LoadGenerator {
+
+	private static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private final Logger log = LogManager.getLogger(LoadGenerator.class);
+
+	private final ExecutorService executorService;
+
+	private final int maxInFlight;
+
+	private final Semaphore inFlight;
+
+	public LoadGenerator(final ExecutorService executorService) {
+		this(executorService, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * @param executorService the executor of the operations, which should
+	 * start a worker for each one, such as one of virtual threads.
+	 * @param maxInFlight the max number of operations issued but not
+	 * completed.
+	 */
+	public LoadGenerator(final ExecutorService executorService, final int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Max in flight should be positive.");
+		}
+
+		this.executorService = executorService;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Issues the operation at the rate for the duration, and waits for all of
+	 * them to complete.
+	 *
+	 * @param operation the operation, its exceptions are counted as errors.
+	 * @param rate the operations per second.
+	 * @param duration the duration of the schedule.
+	 * @return the result of the step.
+	 */
+	public StepResult run(final Runnable operation, final double rate, final Duration duration) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException("Rate should be positive.");
+		}
+
+		final var responseTime = new Recorder(SIGNIFICANT_DIGITS);
+		final var serviceTime = new Recorder(SIGNIFICANT_DIGITS);
+		final var startDelay = new Recorder(SIGNIFICANT_DIGITS);
+		final var errors = new LongAdder();
+
+		final double periodNanos = 1_000_000_000.0 / rate;
+		final long count = Math.max(1, (long) (duration.toNanos() / periodNanos));
+		final long start = System.nanoTime();
+
+		for (long i = 0; i < count; i++) {
+			final long intendedStart = start + (long) (i * periodNanos);
+
+			long now;
+			while ((now = System.nanoTime()) < intendedStart) {
+				LockSupport.parkNanos(intendedStart - now);
+			}
+
+			this.inFlight.acquireUninterruptibly();
+
+			try {
+				this.executorService.execute(() -> {
+					final long actualStart = System.nanoTime();
+					try {
+						operation.run();
+					} catch (RuntimeException e) {
+						errors.increment();
+						log.debug("Operation failed: {}", e.getMessage());
+					} finally {
+						final long end = System.nanoTime();
+						responseTime.recordValue(end - intendedStart);
+						serviceTime.recordValue(end - actualStart);
+						startDelay.recordValue(actualStart - intendedStart);
+						this.inFlight.release();
+					}
+				});
+			} catch (RuntimeException e) {
+				this.inFlight.release();
+				throw e;
+			}
+		}
+
+		// Waits for the operations in flight.
+		this.inFlight.acquireUninterruptibly(this.maxInFlight);
+		this.inFlight.release(this.maxInFlight);
+
+		final long elapsed = System.nanoTime() - start;
+
+		return new StepResult(
+			rate,
+			count * 1_000_000_000.0 / elapsed,
+			errors.sum(),
+			responseTime.getIntervalHistogram(),
+			serviceTime.getIntervalHistogram(),
+			startDelay.getIntervalHistogram()
+		);
+	}
+
+}
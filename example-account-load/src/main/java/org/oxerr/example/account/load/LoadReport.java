@@ -0,0 +1,126 @@
+package org.oxerr.example.account.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The steps of the strategies, each ramped up to its saturation knee, and the
+ * comparison of them at the highest rate each sustained.
+ */
+public class LoadReport {
+
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private final List<Ramp> ramps = new ArrayList<>();
+
+	/**
+	 * @param strategy the name of the strategy.
+	 * @param steps the steps, in the order of the rates.
+	 * @param saturated true if the last step is past the saturation knee.
+	 */
+	public void add(final String strategy, final List<StepResult> steps, final boolean saturated) {
+		this.ramps.add(new Ramp(strategy, List.copyOf(steps), saturated));
+	}
+
+	public void print(final PrintStream out) {
+		for (final var ramp : this.ramps) {
+			out.printf(Locale.ROOT, "%n%s%n", ramp.strategy());
+			out.printf(
+				Locale.ROOT,
+				"  %10s %10s %8s %10s %10s %10s %10s %10s %12s %12s%n",
+				"target/s", "actual/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms", "delay p99 ms"
+			);
+
+			for (final var step : ramp.steps()) {
+				final var response = step.responseTime();
+				out.printf(
+					Locale.ROOT,
+					"%s %10.0f %10.1f %8d %10.3f %10.3f %10.3f %10.3f %10.3f %12.3f %12.3f%n",
+					ramp.isKnee(step) ? " *" : "  ",
+					step.targetRate(),
+					step.actualRate(),
+					step.errors(),
+					millis(response, 50),
+					millis(response, 90),
+					millis(response, 99),
+					millis(response, 99.9),
+					response.getMaxValue() / NANOS_PER_MILLI,
+					millis(step.serviceTime(), 99),
+					millis(step.startDelay(), 99)
+				);
+			}
+		}
+
+		out.printf(Locale.ROOT, "%n* saturation knee%n%n");
+		out.printf(
+			Locale.ROOT,
+			"%-16s %12s %10s %10s %12s%n",
+			"strategy", "sustained/s", "knee/s", "p99 ms", "svc p99 ms"
+		);
+
+		for (final var ramp : this.ramps) {
+			final var sustained = ramp.getSustained();
+			out.printf(
+				Locale.ROOT,
+				"%-16s %12s %10s %10s %12s%n",
+				ramp.strategy(),
+				sustained == null ? "-" : String.format(Locale.ROOT, "%.1f", sustained.actualRate()),
+				ramp.saturated() ? String.format(Locale.ROOT, "%.0f", ramp.getLast().targetRate()) : "-",
+				sustained == null ? "-" : String.format(Locale.ROOT, "%.3f", millis(sustained.responseTime(), 99)),
+				sustained == null ? "-" : String.format(Locale.ROOT, "%.3f", millis(sustained.serviceTime(), 99))
+			);
+		}
+	}
+
+	/**
+	 * Writes the percentile distribution of the response time of each step,
+	 * in milliseconds, as {@code <strategy>-<target rate>.hgrm}, which can be
+	 * plotted by the HdrHistogram plotter.
+	 */
+	public void writeHistograms(final Path dir) throws IOException {
+		Files.createDirectories(dir);
+
+		for (final var ramp : this.ramps) {
+			for (final var step : ramp.steps()) {
+				final var file = dir.resolve(String.format(Locale.ROOT, "%s-%.0f.hgrm", ramp.strategy(), step.targetRate()));
+
+				try (final var out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+					step.responseTime().outputPercentileDistribution(out, NANOS_PER_MILLI);
+				}
+			}
+		}
+	}
+
+	private static double millis(final Histogram histogram, final double percentile) {
+		return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+	}
+
+	private record Ramp(String strategy, List<StepResult> steps, boolean saturated) {
+
+		StepResult getLast() {
+			return this.steps.get(this.steps.size() - 1);
+		}
+
+		boolean isKnee(final StepResult step) {
+			return this.saturated && step == this.getLast();
+		}
+
+		/**
+		 * Returns the last step before the knee, null if there is none.
+		 */
+		StepResult getSustained() {
+			final int size = this.saturated ? this.steps.size() - 1 : this.steps.size();
+			return size > 0 ? this.steps.get(size - 1) : null;
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.oxerr.example.account.load;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The result of a step of load at a fixed target rate, the histograms are in
+ * nanoseconds.
+ *
+ * @param targetRate the operations per second scheduled.
+ * @param actualRate the operations per second completed, from the start of
+ * the step to the completion of its last operation.
+ * @param errors the number of operations which threw.
+ * @param responseTime from the intended start to the completion of each
+ * operation, which includes the time it waited behind the slower ones, so it
+ * is free of coordinated omission.
+ * @param serviceTime from the actual start to the completion of each
+ * operation, which is what a closed-loop benchmark would report.
+ * @param startDelay from the intended start to the actual start of each
+ * operation.
+ */
+public record StepResult(
+	double targetRate,
+	double actualRate,
+	long errors,
+	Histogram responseTime,
+	Histogram serviceTime,
+	Histogram startDelay
+) {
+
+	/**
+	 * Returns the fraction of the operations which threw.
+	 */
+	public double errorRatio() {
+		final long count = this.responseTime.getTotalCount();
+		return count == 0 ? 0 : (double) this.errors / count;
+	}
+
+	/**
+	 * Returns true if the step is past the saturation knee: the completed rate
+	 * falls behind the target rate, the response time at the percentile is
+	 * over the objective, or too many operations threw, which fail fast, so
+	 * would otherwise pass for a sustained rate.
+	 *
+	 * @param minRateFraction the fraction of the target rate which should be
+	 * completed.
+	 * @param percentile the percentile of the response time, such as 99.
+	 * @param objectiveNanos the objective of the response time at the
+	 * percentile.
+	 * @param maxErrorRatio the max fraction of the operations which may throw.
+	 */
+	public boolean isSaturated(
+		final double minRateFraction,
+		final double percentile,
+		final long objectiveNanos,
+		final double maxErrorRatio
+	) {
+		return this.actualRate < this.targetRate * minRateFraction
+			|| this.responseTime.getValueAtPercentile(percentile) > objectiveNanos
+			|| this.errorRatio() > maxErrorRatio;
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Open-loop load driver for account service.
+ */
+package org.oxerr.example.account.load;
@@ -0,0 +1,440 @@
+package org.oxerr.example.account.service.accumulate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.AccountWrittenException;
+
+/**
+ * Accumulates the amounts added to an account in memory, and adds their net
+ * amount to the underlying {@link AccountService} in one call per account, on
+ * a schedule, so many small credits to a few accounts cost one transaction
+ * per account per flush, instead of one each.
+ *
+ * <p>The amounts of an account are summed by a {@link LongAdder}, so the
+ * adders of a hot account do not contend on one counter. The account returned
+ * by an add is the one of its last flush or get, with the amounts pending,
+ * its version is not bumped until flushed. A get merges the amounts pending
+ * into the account of the underlying service.</p>
+ *
+ * <p>The amounts pending are lost if the JVM dies before they are flushed,
+ * which is bounded by the flush interval, and for each account by the max
+ * pending amount, at which the adder flushes the account itself. An amount
+ * larger than the max pending amount is added through at once. A withdrawal
+ * flushes the account first, so the floor is checked with its pending
+ * credits.</p>
+ *
+ * <p>A flush failed is pending again, and retried by the next flush, unless
+ * the underlying service throws {@link AccountWrittenException}, so the
+ * underlying service should throw that if it fails after the amount has been
+ * written, such as on caching it, or the amount is added twice.</p>
+ *
+ * <p>The accounts are kept in memory up to the max number of accounts, above
+ * which the amounts of the other accounts are added through at once. An
+ * account nothing was added to since the previous flush is evicted by the
+ * next one, once it has no amount pending. The underlying service should not
+ * be written by others for the accounts kept, or the accounts returned by the
+ * adds are stale until the next flush.</p>
+ */
+public class AccumulatingAccountService implements AccountService, AutoCloseable {
+
+	private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+	private static final long DEFAULT_MAX_PENDING_AMOUNT = 1_000_000;
+
+	private static final int DEFAULT_MAX_ACCOUNTS = 100_000;
+
+	private final Logger log = LogManager.getLogger(AccumulatingAccountService.class);
+
+	private final AccountService accountService;
+
+	private final long maxPendingAmount;
+
+	private final int maxAccounts;
+
+	private final ConcurrentMap<Long, Pending> pendings;
+
+	private final ScheduledExecutorService flusher;
+
+	private volatile boolean closed;
+
+	public AccumulatingAccountService(final AccountService accountService) {
+		this(accountService, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_PENDING_AMOUNT, DEFAULT_MAX_ACCOUNTS);
+	}
+
+	/**
+	 * @param flushInterval the delay between flushes, bounding the time the
+	 * amounts are at risk.
+	 * @param maxPendingAmount the max absolute net amount of an account not
+	 * yet flushed, bounding the amount at risk, concurrent adders may go past
+	 * it by their amounts.
+	 * @param maxAccounts the max number of accounts kept in memory, the first
+	 * adds of new accounts at the same time may go past it.
+	 */
+	public AccumulatingAccountService(
+		final AccountService accountService,
+		final Duration flushInterval,
+		final long maxPendingAmount,
+		final int maxAccounts
+	) {
+		if (flushInterval.isNegative() || flushInterval.isZero()) {
+			throw new IllegalArgumentException("Flush interval should be positive.");
+		}
+
+		if (maxPendingAmount < 0 || maxAccounts < 0) {
+			throw new IllegalArgumentException("Max pending amount and max accounts should not be negative.");
+		}
+
+		this.accountService = accountService;
+		this.maxPendingAmount = maxPendingAmount;
+		this.maxAccounts = maxAccounts;
+		this.pendings = new ConcurrentHashMap<>();
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "account-accumulator-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		final long interval = flushInterval.toNanos();
+		this.flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Account get(final long id) {
+		final var pending = this.pendings.get(id);
+
+		if (pending == null) {
+			return this.accountService.get(id);
+		}
+
+		// Optimistically, unless a flush starts or ends in between.
+		final int sequence = pending.sequence;
+		if ((sequence & 1) == 0 && pending.flushing == 0) {
+			final var account = this.accountService.get(id);
+			final long amount = pending.amount.sum();
+
+			if (pending.sequence == sequence) {
+				return plus(account, amount);
+			}
+		}
+
+		// Waits for the flush, the account read during it may or may not have
+		// the amount being flushed.
+		synchronized (pending) {
+			return plus(this.accountService.get(id), pending.amount.sum());
+		}
+	}
+
+	@Override
+	public Account addAmount(final long id, final long amount) {
+		this.checkOpen();
+
+		if (Math.abs(amount) > this.maxPendingAmount) {
+			return this.addThrough(id, amount);
+		}
+
+		final var pending = this.getPending(id);
+
+		if (pending == null) {
+			return this.accountService.addAmount(id, amount);
+		}
+
+		if (Math.abs(pending.amount.sum() + amount) > this.maxPendingAmount) {
+			this.flush(id, pending, null);
+		}
+
+		if (!pending.active) {
+			pending.active = true;
+		}
+
+		pending.amount.add(amount);
+
+		if (pending.retired || this.closed) {
+			// Evicted or closed meanwhile, the amount may have missed its last flush.
+			this.flush(id, pending, null);
+		}
+
+		return this.getPendingAccount(id, pending);
+	}
+
+	@Override
+	public Account withdraw(final long id, final long amount, final long floor) {
+		this.checkOpen();
+
+		final var pending = this.pendings.get(id);
+
+		if (pending == null) {
+			return this.accountService.withdraw(id, amount, floor);
+		}
+
+		this.flush(id, pending, () -> this.accountService.withdraw(id, amount, floor));
+
+		return this.getPendingAccount(id, pending);
+	}
+
+	/**
+	 * Returns the number of accounts kept in memory.
+	 */
+	public int getAccounts() {
+		return this.pendings.size();
+	}
+
+	/**
+	 * Flushes the pending amounts of all the accounts, and evicts the ones
+	 * nothing was added to since the previous flush.
+	 *
+	 * @throws RuntimeException the first failure of the accounts, after the
+	 * others have been flushed, with the other failures suppressed. The
+	 * amounts failed are kept pending.
+	 */
+	public void flush() {
+		final List<RuntimeException> failures = new ArrayList<>();
+
+		for (final var entry : this.pendings.entrySet()) {
+			final var pending = entry.getValue();
+
+			try {
+				if (pending.amount.sum() != 0) {
+					this.flush(entry.getKey(), pending, null);
+				} else if (!pending.active) {
+					this.retire(entry.getKey(), pending);
+				}
+			} catch (RuntimeException e) {
+				failures.add(e);
+			}
+
+			pending.active = false;
+		}
+
+		if (!failures.isEmpty()) {
+			final var e = failures.get(0);
+			failures.subList(1, failures.size()).forEach(e::addSuppressed);
+			throw e;
+		}
+	}
+
+	/**
+	 * Rejects the amounts, and stops the flusher after flushing the pending
+	 * amounts.
+	 *
+	 * @throws RuntimeException if any pending amount failed to flush, which
+	 * is lost once this service is discarded.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.flusher.shutdown();
+
+		try {
+			if (!this.flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.warn("Flusher did not stop in time.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		this.flush();
+	}
+
+	private void checkOpen() {
+		if (this.closed) {
+			throw new IllegalStateException("Service is closed.");
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			this.flush();
+		} catch (RuntimeException e) {
+			// Keep the scheduled flusher alive, the amounts are retried next time.
+			log.warn("Flush failed: {}", e.getMessage());
+		}
+	}
+
+	private Account addThrough(final long id, final long amount) {
+		final var pending = this.pendings.get(id);
+
+		if (pending == null) {
+			return this.accountService.addAmount(id, amount);
+		}
+
+		this.flush(id, pending, () -> this.accountService.addAmount(id, amount));
+
+		return this.getPendingAccount(id, pending);
+	}
+
+	/**
+	 * Returns the pending of the account, null if there are max accounts
+	 * already.
+	 *
+	 * @throws IllegalArgumentException if there is no such account.
+	 */
+	private Pending getPending(final long id) {
+		final var pending = this.pendings.get(id);
+
+		if (pending != null) {
+			return pending;
+		}
+
+		if (this.pendings.size() >= this.maxAccounts) {
+			return null;
+		}
+
+		// Read outside of the map, which should not block on I/O.
+		final var created = new Pending(this.accountService.get(id));
+		final var existing = this.pendings.putIfAbsent(id, created);
+		return existing != null ? existing : created;
+	}
+
+	/**
+	 * Evicts the account, after flushing the amounts added since checked.
+	 *
+	 * <p>The adders of the account may still hold its pending, so it is marked
+	 * retired first, then the adders which see the mark flush their amounts
+	 * themselves, and the ones which do not have added before it, so their
+	 * amounts are flushed here.</p>
+	 */
+	private void retire(final long id, final Pending pending) {
+		synchronized (pending) {
+			pending.retired = true;
+
+			try {
+				this.flush(id, pending, null);
+			} catch (RuntimeException e) {
+				pending.retired = false;
+				throw e;
+			}
+
+			this.pendings.remove(id, pending);
+		}
+	}
+
+	/**
+	 * Adds the pending amount of the account to the underlying service, then
+	 * does the write, if any, under the lock of the account.
+	 *
+	 * <p>The amount being flushed is moved out of the adder into the
+	 * flushing, and the account flushed is swapped in, each while the
+	 * sequence is odd, so the readers neither miss nor count it twice. No
+	 * amount added while draining the adder is lost, each cell of it is
+	 * swapped to zero atomically.</p>
+	 */
+	private void flush(final long id, final Pending pending, final Supplier<Account> write) {
+		synchronized (pending) {
+			pending.sequence++;
+			final long amount = pending.amount.sumThenReset();
+			pending.flushing = amount;
+			pending.sequence++;
+
+			if (amount != 0) {
+				Account account;
+
+				try {
+					account = this.accountService.addAmount(id, amount);
+				} catch (AccountWrittenException e) {
+					// Added, retrying would add it twice.
+					log.warn("Flushed {} of {}, but failed after: {}", amount, id, e.getMessage());
+					account = e.getAccounts().get(0);
+				} catch (RuntimeException e) {
+					// Pending again, to be retried by the next flush.
+					pending.sequence++;
+					pending.amount.add(amount);
+					pending.flushing = 0;
+					pending.sequence++;
+					throw e;
+				}
+
+				pending.sequence++;
+				pending.account = account;
+				pending.flushing = 0;
+				pending.sequence++;
+
+				log.trace("Flushed {} of {}.", amount, id);
+			}
+
+			if (write != null) {
+				final var account = write.get();
+
+				pending.sequence++;
+				pending.account = account;
+				pending.sequence++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the account of its last flush or get, with the amounts pending,
+	 * without reading the underlying service.
+	 */
+	private Account getPendingAccount(final long id, final Pending pending) {
+		while (true) {
+			final int sequence = pending.sequence;
+
+			if ((sequence & 1) == 0) {
+				final var account = pending.account;
+				final long amount = pending.flushing + pending.amount.sum();
+
+				if (pending.sequence == sequence) {
+					return new Account(id, account.available() + amount, account.version());
+				}
+			}
+
+			// The sequence is only odd for a few assignments.
+			Thread.onSpinWait();
+		}
+	}
+
+	private static Account plus(final Account account, final long amount) {
+		return new Account(account.id(), account.available() + amount, account.version());
+	}
+
+	private static class Pending {
+
+		private final LongAdder amount = new LongAdder();
+
+		/**
+		 * Odd while the amount, the flushing or the account is being changed,
+		 * only changed under the lock of this pending.
+		 */
+		private volatile int sequence;
+
+		/**
+		 * The amount drained from the adder, not yet added to the underlying
+		 * service.
+		 */
+		private volatile long flushing;
+
+		private volatile Account account;
+
+		/**
+		 * True if an amount was added since the previous flush of all the
+		 * accounts.
+		 */
+		private volatile boolean active = true;
+
+		/**
+		 * True once evicted, the amounts added after are flushed by their
+		 * adders.
+		 */
+		private volatile boolean retired;
+
+		Pending(final Account account) {
+			this.account = account;
+		}
+
+	}
+
+}
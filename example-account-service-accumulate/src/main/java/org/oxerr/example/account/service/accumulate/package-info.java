@@ -0,0 +1,4 @@
+/**
+ * Account service accumulating the amounts added in memory.
+ */
+package org.oxerr.example.account.service.accumulate;
@@ -0,0 +1,324 @@
+package org.oxerr.example.account.service.accumulate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.AccountWrittenException;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+
+class AccumulatingAccountServiceTest {
+
+	private static final long ID = 1;
+
+	private static final int ADDERS = 4;
+
+	private static final int ADDS = 20_000;
+
+	private InMemoryAccountService underlying;
+
+	private AccumulatingAccountService accountService;
+
+	@BeforeEach
+	void setUp() {
+		this.underlying = new InMemoryAccountService();
+		this.underlying.create(ID);
+
+		// Flushed by the tests, not by the schedule.
+		this.accountService = new AccumulatingAccountService(this.underlying, Duration.ofHours(1), 1_000_000, 100);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.accountService.close();
+	}
+
+	/**
+	 * The reads racing the flushes neither miss the amount being flushed nor
+	 * count it twice: each read is between the adds completed before it and
+	 * the adds started after it.
+	 */
+	@Test
+	void testGetDuringFlushes() throws InterruptedException {
+		final var started = new LongAdder();
+		final var completed = new LongAdder();
+		final var failure = new AtomicReference<Throwable>();
+		final var done = new AtomicBoolean();
+
+		final List<Thread> adders = new ArrayList<>();
+		for (int i = 0; i < ADDERS; i++) {
+			adders.add(start(failure, () -> {
+				for (int j = 0; j < ADDS; j++) {
+					started.increment();
+					this.accountService.addAmount(ID, 1);
+					completed.increment();
+				}
+			}));
+		}
+
+		final var flusher = start(failure, () -> {
+			while (!done.get()) {
+				this.accountService.flush();
+			}
+		});
+
+		final var reader = start(failure, () -> {
+			while (!done.get()) {
+				final long before = completed.sum();
+				final long available = this.accountService.get(ID).available();
+				final long after = started.sum();
+
+				assertTrue(
+					before <= available && available <= after,
+					() -> String.format("%d should be between %d and %d.", available, before, after)
+				);
+			}
+		});
+
+		join(adders);
+		done.set(true);
+		join(List.of(flusher, reader));
+		rethrow(failure);
+
+		this.accountService.flush();
+		assertEquals(ADDERS * ADDS, this.underlying.get(ID).available());
+		assertEquals(ADDERS * ADDS, this.accountService.get(ID).available());
+	}
+
+	/**
+	 * The account returned by an add, read from memory while flushed, has
+	 * at least the amounts of the adds completed before it, its own included.
+	 */
+	@Test
+	void testAddAmountDuringFlushes() throws InterruptedException {
+		final var started = new LongAdder();
+		final var completed = new LongAdder();
+		final var failure = new AtomicReference<Throwable>();
+		final var done = new AtomicBoolean();
+
+		final List<Thread> adders = new ArrayList<>();
+		for (int i = 0; i < ADDERS; i++) {
+			adders.add(start(failure, () -> {
+				for (int j = 0; j < ADDS; j++) {
+					final long before = completed.sum();
+					started.increment();
+					final long available = this.accountService.addAmount(ID, 1).available();
+					final long after = started.sum();
+					completed.increment();
+
+					assertTrue(
+						before < available && available <= after,
+						() -> String.format("%d should be over %d and at most %d.", available, before, after)
+					);
+				}
+			}));
+		}
+
+		final var flusher = start(failure, () -> {
+			while (!done.get()) {
+				this.accountService.flush();
+			}
+		});
+
+		join(adders);
+		done.set(true);
+		join(List.of(flusher));
+		rethrow(failure);
+	}
+
+	@Test
+	void testEvictIdle() {
+		this.accountService.addAmount(ID, 3);
+		this.accountService.flush();
+		assertEquals(1, this.accountService.getAccounts());
+		assertEquals(3, this.underlying.get(ID).available());
+
+		// Nothing added since the previous flush.
+		this.accountService.flush();
+		assertEquals(0, this.accountService.getAccounts());
+
+		this.accountService.addAmount(ID, 4);
+		assertEquals(1, this.accountService.getAccounts());
+		assertEquals(7, this.accountService.get(ID).available());
+	}
+
+	/**
+	 * No amount is lost by the adders still holding an evicted account.
+	 */
+	@Test
+	void testEvictDuringAdds() throws InterruptedException {
+		final var failure = new AtomicReference<Throwable>();
+		final var done = new AtomicBoolean();
+
+		final List<Thread> adders = new ArrayList<>();
+		for (int i = 0; i < ADDERS; i++) {
+			adders.add(start(failure, () -> {
+				for (int j = 0; j < ADDS; j++) {
+					this.accountService.addAmount(ID, 1);
+
+					if (j % 100 == 0) {
+						Thread.yield();
+					}
+				}
+			}));
+		}
+
+		final var flusher = start(failure, () -> {
+			while (!done.get()) {
+				this.accountService.flush();
+			}
+		});
+
+		join(adders);
+		done.set(true);
+		join(List.of(flusher));
+		rethrow(failure);
+
+		this.accountService.flush();
+		assertEquals(ADDERS * ADDS, this.underlying.get(ID).available());
+	}
+
+	@Test
+	void testAddAmountAfterClose() {
+		this.accountService.addAmount(ID, 3);
+		this.accountService.close();
+
+		assertEquals(3, this.underlying.get(ID).available());
+		assertThrows(IllegalStateException.class, () -> this.accountService.addAmount(ID, 1));
+		assertThrows(IllegalStateException.class, () -> this.accountService.withdraw(ID, -1, 0));
+		assertEquals(3, this.underlying.get(ID).available());
+	}
+
+	/**
+	 * An amount written by the underlying service, which failed after, is not
+	 * flushed again.
+	 */
+	@Test
+	void testFlushWrittenThenFailed() {
+		this.accountService.addAmount(ID, 3);
+
+		this.underlying.failAfterWrite = true;
+		this.accountService.flush();
+		this.underlying.failAfterWrite = false;
+
+		this.accountService.addAmount(ID, 4);
+		this.accountService.flush();
+
+		assertEquals(7, this.underlying.get(ID).available());
+		assertEquals(7, this.accountService.get(ID).available());
+	}
+
+	/**
+	 * An amount failed to be written by the underlying service is flushed
+	 * again.
+	 */
+	@Test
+	void testFlushFailed() {
+		this.accountService.addAmount(ID, 3);
+
+		this.underlying.failBeforeWrite = true;
+		assertThrows(IllegalStateException.class, this.accountService::flush);
+		this.underlying.failBeforeWrite = false;
+
+		this.accountService.flush();
+
+		assertEquals(3, this.underlying.get(ID).available());
+		assertEquals(3, this.accountService.get(ID).available());
+	}
+
+	private static Thread start(final AtomicReference<Throwable> failure, final Runnable runnable) {
+		final var thread = new Thread(() -> {
+			try {
+				runnable.run();
+			} catch (Throwable t) {
+				failure.compareAndSet(null, t);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private static void join(final List<Thread> threads) throws InterruptedException {
+		for (final var thread : threads) {
+			thread.join();
+		}
+	}
+
+	private static void rethrow(final AtomicReference<Throwable> failure) {
+		final var t = failure.get();
+
+		if (t instanceof RuntimeException e) {
+			throw e;
+		}
+
+		if (t instanceof Error e) {
+			throw e;
+		}
+	}
+
+	private static class InMemoryAccountService implements AccountService {
+
+		private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+		private volatile boolean failBeforeWrite;
+
+		private volatile boolean failAfterWrite;
+
+		void create(final long id) {
+			this.accounts.put(id, new Account(id, 0, 0));
+		}
+
+		@Override
+		public Account get(final long id) {
+			final var account = this.accounts.get(id);
+
+			if (account == null) {
+				throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+			}
+
+			return account;
+		}
+
+		@Override
+		public Account addAmount(final long id, final long amount) {
+			if (this.failBeforeWrite) {
+				throw new IllegalStateException("Failed before written.");
+			}
+
+			final var written = this.accounts.compute(id, (k, account) -> new Account(id, account.available() + amount, account.version() + 1));
+
+			if (this.failAfterWrite) {
+				throw new AccountWrittenException(List.of(written), new IllegalStateException("Failed after written."));
+			}
+
+			return written;
+		}
+
+		@Override
+		public Account withdraw(final long id, final long amount, final long floor) {
+			return this.accounts.compute(id, (k, account) -> {
+				if (account.available() + amount < floor) {
+					throw new InsufficientAvailableException(account, amount, floor);
+				}
+
+				return new Account(id, account.available() + amount, account.version() + 1);
+			});
+		}
+
+	}
+
+}
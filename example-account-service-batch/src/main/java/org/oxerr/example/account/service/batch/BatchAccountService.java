@@ -0,0 +1,437 @@
+package org.oxerr.example.account.service.batch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Queues concurrent {@link #addAmount(long, long)} calls and applies them in
+ * group commits.
+ *
+ * <p>The deltas of the same account in a batch are coalesced into one update,
+ * which increments the version by the number of coalesced calls, so every
+ * caller still gets the exact state right after its own delta.</p>
+ *
+ * <p>The flusher only writes the database, each caller caches its own state
+ * as the other services do, so the split accounts and the near cache are
+ * handled the same.</p>
+ *
+ * <p>A withdrawal is not queued, it is checked and applied by one conditional
+ * update, as its floor can not be coalesced, which returns the account on
+ * PostgreSQL and H2. The account is only read when the update is rejected, to
+ * tell why, and on MySQL, which has no {@code returning}, after the update in
+ * a transaction.</p>
+ */
+public class BatchAccountService extends AbstractJDBCAccountService implements AutoCloseable {
+
+	private static final int DEFAULT_MAX_BATCH_SIZE = 1_000;
+
+	private static final Duration DEFAULT_WINDOW = Duration.ofMillis(1);
+
+	private static final long POLL_TIMEOUT_MILLIS = 100;
+
+	private static final Duration CLOSE_TIMEOUT = Duration.ofMinutes(1);
+
+	private final Logger log = LogManager.getLogger(BatchAccountService.class);
+
+	private final String updateSql;
+
+	private final String withdrawSql;
+
+	/**
+	 * The withdrawal returning the account of the database, empty if there
+	 * is none, null until the database is known.
+	 */
+	private volatile Optional<String> withdrawReturningSql;
+
+	private final int maxBatchSize;
+
+	private final long windowNanos;
+
+	private final BlockingQueue<Request> queue;
+
+	private final Thread flusher;
+
+	private volatile boolean running;
+
+	public BatchAccountService(
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		this(dataSource, jedisPool, jedisCluster, DEFAULT_MAX_BATCH_SIZE, DEFAULT_WINDOW);
+	}
+
+	public BatchAccountService(
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster,
+		final int maxBatchSize,
+		final Duration window
+	) {
+		super(dataSource, jedisPool, jedisCluster);
+
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("Max batch size should be positive.");
+		}
+
+		this.updateSql = "update account set available = available + ?, version = version + ? where id = ?";
+		this.withdrawSql = "update account set available = available + ?, version = version + 1 where id = ? and available + ? >= ?";
+		this.maxBatchSize = maxBatchSize;
+		this.windowNanos = window.toNanos();
+		this.queue = new LinkedBlockingQueue<>();
+		this.running = true;
+
+		this.flusher = new Thread(this::flushLoop, "account-batch-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	@Override
+	protected Account addAmountViaJDBC(final long id, final long amount) {
+		if (!this.running) {
+			throw new IllegalStateException("Service is closed.");
+		}
+
+		final var request = new Request(id, amount, new CompletableFuture<>());
+		this.queue.add(request);
+
+		// Closed concurrently, take it back unless the flusher has taken it.
+		if (!this.running && this.queue.remove(request)) {
+			throw new IllegalStateException("Service is closed.");
+		}
+
+		return join(request.future());
+	}
+
+	@Override
+	protected Account withdrawViaJDBC(final long id, final long amount, final long floor) {
+		try (final var conn = this.dataSource.getConnection()) {
+			final var withdrawReturningSql = this.getWithdrawReturningSql(conn);
+
+			if (withdrawReturningSql.isEmpty()) {
+				return this.inTransaction(conn, c -> this.withdrawThenSelect(c, id, amount, floor));
+			}
+
+			try (final var withdraw = conn.prepareStatement(withdrawReturningSql.get())) {
+				this.setWithdrawParameters(withdraw, id, amount, floor);
+
+				try (final var rs = withdraw.executeQuery()) {
+					if (rs.next()) {
+						return new Account(id, rs.getLong("available"), rs.getLong("version"));
+					}
+				}
+			}
+
+			throw new InsufficientAvailableException(this.select(conn, id), amount, floor);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Updates the account unless the available would fall below the floor,
+	 * then reads it back, locked by the update if updated.
+	 */
+	private Account withdrawThenSelect(
+		final Connection conn,
+		final long id,
+		final long amount,
+		final long floor
+	) throws SQLException {
+		final int count;
+
+		try (final var withdraw = conn.prepareStatement(this.withdrawSql)) {
+			this.setWithdrawParameters(withdraw, id, amount, floor);
+			count = withdraw.executeUpdate();
+		}
+
+		final var account = this.select(conn, id);
+
+		if (count < 1) {
+			throw new InsufficientAvailableException(account, amount, floor);
+		}
+
+		return account;
+	}
+
+	private void setWithdrawParameters(
+		final PreparedStatement withdraw,
+		final long id,
+		final long amount,
+		final long floor
+	) throws SQLException {
+		withdraw.setLong(1, amount);
+		withdraw.setLong(2, id);
+		withdraw.setLong(3, amount);
+		withdraw.setLong(4, floor);
+	}
+
+	private Account select(final Connection conn, final long id) throws SQLException {
+		try (final var select = conn.prepareStatement(this.selectSql)) {
+			select.setLong(1, id);
+
+			try (final var rs = select.executeQuery()) {
+				if (rs.next()) {
+					return new Account(id, rs.getLong("available"), rs.getLong("version"));
+				} else {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+			}
+		}
+	}
+
+	private Optional<String> getWithdrawReturningSql(final Connection conn) throws SQLException {
+		var current = this.withdrawReturningSql;
+
+		if (current == null) {
+			final var name = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+
+			if (name.contains("postgresql")) {
+				current = Optional.of(this.withdrawSql + " returning available, version");
+			} else if (name.contains("h2")) {
+				current = Optional.of("select available, version from final table (" + this.withdrawSql + ")");
+			} else {
+				current = Optional.empty();
+			}
+
+			this.withdrawReturningSql = current;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Stops the flusher after flushing the queued requests, or fails them if
+	 * it does not stop in time.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+
+		try {
+			this.flusher.join(CLOSE_TIMEOUT.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (this.flusher.isAlive()) {
+			log.warn("Flusher did not stop in time.");
+			this.flusher.interrupt();
+			this.failQueued();
+		}
+	}
+
+	private void flushLoop() {
+		final List<Request> batch = new ArrayList<>(this.maxBatchSize);
+
+		try {
+			while (this.running || !this.queue.isEmpty()) {
+				final var first = this.queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+
+				batch.add(first);
+				this.fill(batch);
+
+				this.flush(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Stopped, or died of an error, reject the new requests and fail
+			// the ones which will never be flushed.
+			this.running = false;
+			batch.forEach(r -> r.future().completeExceptionally(new IllegalStateException("Service is closed.")));
+			this.failQueued();
+		}
+	}
+
+	private void failQueued() {
+		final List<Request> remaining = new ArrayList<>();
+		this.queue.drainTo(remaining);
+		remaining.forEach(r -> r.future().completeExceptionally(new IllegalStateException("Service is closed.")));
+	}
+
+	private void fill(final List<Request> batch) throws InterruptedException {
+		final long deadline = System.nanoTime() + this.windowNanos;
+
+		while (batch.size() < this.maxBatchSize) {
+			this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+
+			final long remaining = deadline - System.nanoTime();
+			if (batch.size() >= this.maxBatchSize || remaining <= 0) {
+				break;
+			}
+
+			final var next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void flush(final List<Request> batch) {
+		log.trace("Flushing {} requests.", batch::size);
+
+		// Sorted by ID, so concurrent batches lock rows in the same order.
+		final SortedMap<Long, List<Request>> requests = new TreeMap<>();
+		batch.forEach(r -> requests.computeIfAbsent(r.id(), id -> new ArrayList<>()).add(r));
+
+		final SortedMap<Long, Delta> deltas = new TreeMap<>();
+		requests.forEach((id, list) -> deltas.put(id, new Delta(list.stream().mapToLong(Request::amount).sum(), list.size())));
+
+		final Map<Long, Account> accounts;
+
+		try {
+			accounts = this.updateViaJDBC(deltas, false);
+		} catch (SQLException e) {
+			final var cause = new TransientDataAccessResourceException(e.getMessage(), e);
+			batch.forEach(r -> r.future().completeExceptionally(cause));
+			return;
+		} catch (RuntimeException e) {
+			batch.forEach(r -> r.future().completeExceptionally(e));
+			return;
+		}
+
+		requests.forEach((id, list) -> this.complete(id, list, accounts.get(id)));
+	}
+
+	@Override
+	protected List<Account> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts) {
+		final SortedMap<Long, Delta> deltas = new TreeMap<>();
+		amounts.forEach((id, amount) -> deltas.put(id, new Delta(amount, 1)));
+
+		try {
+			return new ArrayList<>(new TreeMap<>(this.updateViaJDBC(deltas, true)).values());
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Applies the deltas in one transaction.
+	 *
+	 * @param atomic if true, rolls back when any account does not exist,
+	 * otherwise the missing accounts are absent from the result.
+	 * @return the accounts after updated, by ID.
+	 */
+	private Map<Long, Account> updateViaJDBC(final SortedMap<Long, Delta> deltas, final boolean atomic) throws SQLException {
+		try (final var conn = this.dataSource.getConnection()) {
+			return this.inTransaction(conn, c -> this.updateViaJDBC(c, deltas, atomic));
+		}
+	}
+
+	private Map<Long, Account> updateViaJDBC(
+		final Connection conn,
+		final SortedMap<Long, Delta> deltas,
+		final boolean atomic
+	) throws SQLException {
+		final Map<Long, Account> accounts = new HashMap<>(deltas.size());
+
+		final var selectSql = String.format(
+			"select id, available, version from account where id in (%s)",
+			String.join(", ", Collections.nCopies(deltas.size(), "?"))
+		);
+
+		try (
+			final var update = conn.prepareStatement(this.updateSql);
+			final var select = conn.prepareStatement(selectSql);
+		) {
+			var index = 1;
+
+			for (final var entry : deltas.entrySet()) {
+				update.setLong(1, entry.getValue().amount());
+				update.setLong(2, entry.getValue().count());
+				update.setLong(3, entry.getKey());
+				update.addBatch();
+
+				select.setLong(index++, entry.getKey());
+			}
+
+			update.executeBatch();
+
+			// Read the rows back in the same transaction to get the committed state.
+			try (final var rs = select.executeQuery()) {
+				while (rs.next()) {
+					final var account = new Account(rs.getLong("id"), rs.getLong("available"), rs.getLong("version"));
+					accounts.put(account.id(), account);
+				}
+			}
+
+			if (atomic && accounts.size() < deltas.size()) {
+				final var id = deltas.keySet().stream().filter(i -> !accounts.containsKey(i)).findFirst().orElseThrow();
+				throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+			}
+		}
+
+		return accounts;
+	}
+
+	private void complete(final long id, final List<Request> requests, final Account account) {
+		if (account == null) {
+			final var e = new IllegalArgumentException(String.format("No such account with ID %d.", id));
+			requests.forEach(r -> r.future().completeExceptionally(e));
+			return;
+		}
+
+		// Walk back from the final state to the state right after each request.
+		var available = account.available();
+		var version = account.version();
+
+		for (int i = requests.size() - 1; i >= 0; i--) {
+			final var request = requests.get(i);
+			request.future().complete(new Account(id, available, version));
+			available -= request.amount();
+			version--;
+		}
+	}
+
+	private static Account join(final CompletableFuture<Account> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	private record Request(long id, long amount, CompletableFuture<Account> future) {
+	}
+
+	private record Delta(long amount, long count) {
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Account service implementation using group commit.
+ */
+package org.oxerr.example.account.service.batch;
@@ -1,84 +1,137 @@
 package org.oxerr.example.account.service.database.lock;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
 
 import javax.sql.DataSource;
 
 import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.InsufficientAvailableException;
 import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
 import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
 
 import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
 
 public class DatabaseLockAccountService extends AbstractJDBCAccountService {
 
+	private static final long NO_FLOOR = Long.MIN_VALUE;
+
 	private final String selectForUpdateSql;
 
-	protected DatabaseLockAccountService(
+	private final String updateSql;
+
+	public DatabaseLockAccountService(
 		final DataSource dataSource,
 		final JedisPool jedisPool,
 		final JedisCluster jedisCluster
 	) {
 		super(dataSource, jedisPool, jedisCluster);
 		this.selectForUpdateSql = "select id, available, version from account where id = ? for update";
+		this.updateSql = "update account set available = ?, version = ? where id = ?";
 	}
 
 	@Override
 	protected Account addAmountViaJDBC(final long id, final long amount) {
+		return this.withdrawViaJDBC(id, amount, NO_FLOOR);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The floor is checked against the locked row, so it costs no extra
+	 * query.</p>
+	 */
+	@Override
+	protected Account withdrawViaJDBC(final long id, final long amount, final long floor) {
 		try {
-			return this.addAmountViaJDBCInternal(id, amount);
+			return this.addAmountViaJDBCInternal(id, amount, floor);
 		} catch (SQLException e) {
 			throw new TransientDataAccessResourceException(e.getMessage(), e);
 		}
 	}
 
-	private Account addAmountViaJDBCInternal(final long id, final long amount) throws SQLException {
+	private Account addAmountViaJDBCInternal(final long id, final long amount, final long floor) throws SQLException {
 		try (final var conn = this.dataSource.getConnection()) {
-			final var originalAutoCommit = conn.getAutoCommit();
-			try {
-				conn.setAutoCommit(false);
-				return this.addAmountViaJDBCInternal(conn, id, amount);
-			} finally {
-				conn.setAutoCommit(originalAutoCommit);
-			}
+			return this.inTransaction(conn, c -> this.updateAvailable(c, id, amount, floor));
 		}
 	}
 
-	private Account addAmountViaJDBCInternal(final Connection conn, final long id, final long amount) throws SQLException {
-		if (conn.getAutoCommit()) {
-			throw new IllegalArgumentException("Connection should not be in auto-commit mode.");
+	@Override
+	protected List<Account> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts) {
+		try {
+			return this.applyPostingsViaJDBCInternal(amounts);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
 		}
+	}
 
-		long available;
-		long version;
+	private List<Account> applyPostingsViaJDBCInternal(final SortedMap<Long, Long> amounts) throws SQLException {
+		try (final var conn = this.dataSource.getConnection()) {
+			return this.inTransaction(conn, c -> {
+				final List<Account> accounts = new ArrayList<>(amounts.size());
 
-		try (final var selectForUpdate = conn.prepareStatement(this.selectForUpdateSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE)) {
+				// Lock the rows in ascending ID order.
+				for (final var entry : amounts.entrySet()) {
+					accounts.add(this.updateAvailable(c, entry.getKey(), entry.getValue(), NO_FLOOR));
+				}
+
+				return accounts;
+			});
+		}
+	}
+
+	/**
+	 * Locks the row and adds the amount, without committing.
+	 *
+	 * @throws InsufficientAvailableException if the available would fall
+	 * below the floor.
+	 */
+	private Account updateAvailable(
+		final Connection conn,
+		final long id,
+		final long amount,
+		final long floor
+	) throws SQLException {
+		final long available;
+		final long version;
+
+		try (final var selectForUpdate = conn.prepareStatement(this.selectForUpdateSql)) {
 			selectForUpdate.setLong(1, id);
 
 			try (final var rs = selectForUpdate.executeQuery()) {
 				if (rs.next()) {
-					available = rs.getLong("available") + amount;
-					version = rs.getLong("version") + 1;
-
-					rs.updateLong("available", available);
-					rs.updateLong("version", version);
-
-					rs.updateRow();
-
-					conn.commit();
+					available = rs.getLong("available");
+					version = rs.getLong("version");
 				} else {
 					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
 				}
-			} catch (SQLException e) {
-				conn.rollback();
-				throw e;
 			}
 		}
 
-		return new Account(id, available, version);
+		if (available + amount < floor) {
+			throw new InsufficientAvailableException(new Account(id, available, version), amount, floor);
+		}
+
+		// A plain update, an updatable result set may cost the driver extra
+		// metadata queries to build its own.
+		try (final var update = conn.prepareStatement(this.updateSql)) {
+			update.setLong(1, available + amount);
+			update.setLong(2, version + 1);
+			update.setLong(3, id);
+
+			// The row is locked, anything but one row is a bug, roll it back.
+			final int count = update.executeUpdate();
+			if (count != 1) {
+				throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(this.updateSql, 1, count);
+			}
+		}
+
+		return new Account(id, available + amount, version + 1);
 	}
 
 }
@@ -1,30 +1,63 @@
 package org.oxerr.example.account.service.jdbc;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import javax.sql.DataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.oxerr.example.account.Account;
+import org.oxerr.example.account.Posting;
 import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.AccountWrittenException;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+import org.oxerr.example.account.service.jdbc.AccountMetrics.Phase;
 import org.springframework.dao.TransientDataAccessResourceException;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
-import redis.clients.jedis.params.ZAddParams;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
 public abstract class AbstractJDBCAccountService implements AccountService {
 
 	private static final long EXPIRATION_SECONDS = Duration.ofDays(1).toMinutes() * 60;
 
+	/**
+	 * Up to a tenth of the expiration is added at random, so the accounts
+	 * cached together do not expire together.
+	 */
+	private static final long EXPIRATION_JITTER_SECONDS = EXPIRATION_SECONDS / 10;
+
+	private static final int MAX_IN_LIST_SIZE = 1_000;
+
 	private final Logger log = LogManager.getLogger(AbstractJDBCAccountService.class);
 
 	protected final DataSource dataSource;
@@ -35,7 +68,21 @@ public abstract class AbstractJDBCAccountService implements AccountService {
 
 	private final JedisCluster jedisCluster;
 
-	private final ObjectMapper objectMapper;
+	private final ClusterSlots clusterSlots;
+
+	private final ConcurrentMap<Long, CompletableFuture<Account>> loads;
+
+	private AccountCodec codec;
+
+	private CacheLayout cacheLayout;
+
+	private NearCache nearCache;
+
+	private AccountShards shards;
+
+	private Replicas replicas;
+
+	private AccountMetrics metrics;
 
 	protected AbstractJDBCAccountService(
 		final DataSource dataSource,
@@ -45,10 +92,90 @@ public abstract class AbstractJDBCAccountService implements AccountService {
 		this.dataSource = dataSource;
 		this.jedisPool = jedisPool;
 		this.jedisCluster = jedisCluster;
-		this.objectMapper = new ObjectMapper();
+		this.clusterSlots = jedisCluster == null ? null : new ClusterSlots(jedisCluster);
+		this.codec = new JsonAccountCodec();
+		this.cacheLayout = new SortedSetCacheLayout();
+		this.loads = new ConcurrentHashMap<>();
 		this.selectSql = "select id, available, version from account where id = ?";
 	}
 
+	/**
+	 * Sets the codec of cached values, should be called before the service is used.
+	 *
+	 * @param codec the codec, defaults to {@link JsonAccountCodec}.
+	 */
+	public void setCodec(final AccountCodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Sets the layout of cached values, should be called before the service is used.
+	 *
+	 * @param cacheLayout the layout, defaults to {@link SortedSetCacheLayout}.
+	 */
+	public void setCacheLayout(final CacheLayout cacheLayout) {
+		this.cacheLayout = cacheLayout;
+	}
+
+	/**
+	 * Sets the optional near cache, should be called before the service is used.
+	 *
+	 * @param nearCache the near cache, or null to disable it.
+	 */
+	public void setNearCache(final NearCache nearCache) {
+		this.nearCache = nearCache;
+	}
+
+	/**
+	 * Splits the hot accounts into sub-rows of the {@code account_shard}
+	 * table, creating the missing ones, should be called before the service
+	 * is used.
+	 *
+	 * <p>The amounts of a split account are added to a random sub-row, so its
+	 * writers do not serialize on one row, and its available and version are
+	 * the sums of its row and sub-rows. Postings of a split account are still
+	 * written to its row. A withdrawal from a split account locks its row and
+	 * all its sub-rows, to check the floor against their sum, so it waits for
+	 * and holds back the adds of the account.</p>
+	 *
+	 * @param shards the number of sub-rows by account ID.
+	 */
+	public void setShards(final Map<Long, Integer> shards) {
+		final var accountShards = new AccountShards(this.dataSource, shards);
+		accountShards.createShards();
+		this.shards = accountShards;
+	}
+
+	/**
+	 * Sets the read replicas for the accounts missed by the cache, taken in
+	 * turn, should be called before the service is used.
+	 *
+	 * <p>The latest version of each account written by this service is kept
+	 * for the max lag. An account read from a replica older than that, or
+	 * missing from a replica, is read again from the primary, so an account
+	 * is never read older than the version written before, within the max
+	 * lag. The split accounts are always read from the primary.</p>
+	 *
+	 * @param replicas the replica data sources, or empty to read from the
+	 * primary.
+	 * @param maxLag the max replication lag.
+	 */
+	public void setReplicas(final List<DataSource> replicas, final Duration maxLag) {
+		this.replicas = replicas.isEmpty() ? null : new Replicas(replicas, maxLag);
+	}
+
+	/**
+	 * Sets the optional metrics, should be called before the service is used.
+	 *
+	 * <p>The connection waits are not recorded by the service, but by the
+	 * pool, such as with {@link AccountMetricsTrackerFactory}.</p>
+	 *
+	 * @param metrics the metrics, or null to disable them.
+	 */
+	public void setMetrics(final AccountMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public long count() {
 		final long count;
 		final var countSql = "select count(*) from account";
@@ -88,7 +215,7 @@ public abstract class AbstractJDBCAccountService implements AccountService {
 			}
 			insert.executeLargeBatch();
 		} catch (SQLException e) {
-			log.warn(e.getMessage());
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
 		}
 	}
 
@@ -96,28 +223,185 @@ public abstract class AbstractJDBCAccountService implements AccountService {
 	public Account get(final long id) {
 		log.trace("Getting {}", id);
 
-		return this.getViaJedis(id).orElseGet(() -> {
+		if (this.nearCache != null) {
+			final long start = this.startTimer();
+			final var cached = this.nearCache.get(id);
+			this.recordLatency(Phase.NEAR_CACHE_READ, start);
+
+			if (cached.isPresent()) {
+				return cached.get();
+			}
+		}
+
+		final var cached = this.getViaJedis(id);
+
+		if (this.metrics != null) {
+			if (cached.isPresent()) {
+				this.metrics.recordCacheHits(1);
+			} else {
+				this.metrics.recordCacheMisses(1);
+			}
+		}
+
+		final var account = cached.orElseGet(() -> this.load(id));
+
+		if (this.nearCache != null) {
+			this.nearCache.put(account);
+		}
+
+		return account;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>Looks up all the accounts in Redis in one pipeline, one per node in
+	 * cluster mode, loads the misses in one query, and caches them in one
+	 * pipeline.</p>
+	 */
+	@Override
+	public List<Account> getAll(final long... ids) {
+		log.trace("Getting all {}", ids.length);
+
+		final Map<Long, Account> accounts = new HashMap<>(ids.length);
+
+		if (this.nearCache != null) {
+			final long start = this.startTimer();
+			for (final long id : ids) {
+				this.nearCache.get(id).ifPresent(account -> accounts.put(id, account));
+			}
+			this.recordLatency(Phase.NEAR_CACHE_READ, start);
+		}
+
+		final Set<Long> jedisIds = LongStream.of(ids)
+			.filter(id -> !accounts.containsKey(id))
+			.boxed()
+			.collect(Collectors.toSet());
+		final var cached = this.getAllViaJedis(jedisIds);
+		accounts.putAll(cached);
+
+		if (this.metrics != null) {
+			this.metrics.recordCacheHits(cached.size());
+			this.metrics.recordCacheMisses(jedisIds.size() - cached.size());
+		}
+
+		if (this.nearCache != null) {
+			cached.values().forEach(this.nearCache::put);
+		}
+
+		final List<Long> jdbcIds = jedisIds.stream()
+			.filter(id -> !accounts.containsKey(id))
+			.collect(Collectors.toList());
+
+		if (!jdbcIds.isEmpty()) {
+			final long start = this.startTimer();
+			final var loaded = this.getAllViaJDBC(jdbcIds);
+			this.recordLatency(Phase.JDBC_READ, start);
+			this.cacheAll(loaded);
+			loaded.forEach(account -> accounts.put(account.id(), account));
+		}
+
+		return LongStream.of(ids).mapToObj(id -> {
+			final var account = accounts.get(id);
+			if (account == null) {
+				throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+			}
+			return account;
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Loads the account from the database and caches it, only once for the
+	 * concurrent misses of the same account, which share the result.
+	 */
+	private Account load(final long id) {
+		final var future = new CompletableFuture<Account>();
+		final var inFlight = this.loads.putIfAbsent(id, future);
+
+		if (inFlight != null) {
+			log.trace("Joining the load of {}", id);
+
+			try {
+				return inFlight.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				if (e.getCause() instanceof Error cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		}
+
+		try {
+			final long start = this.startTimer();
 			final var account = this.getViaJDBC(id);
+			this.recordLatency(Phase.JDBC_READ, start);
+
 			this.cache(account);
+			future.complete(account);
 			return account;
-		});
+		} catch (RuntimeException | Error e) {
+			// Any failure, or the joiners would wait forever.
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.loads.remove(id, future);
+		}
 	}
 
 	protected Account getViaJDBC(final long id) {
 		log.trace("Getting via JDBC: {}", id);
 
+		if (this.isSharded(id)) {
+			return this.shards.get(id);
+		}
+
+		if (this.replicas != null) {
+			final var replica = this.getViaReplica(id);
+			if (replica.isPresent()) {
+				return replica.get();
+			}
+		}
+
 		try {
-			return this.getViaJDBCInternal(id);
+			return this.getViaJDBCInternal(this.dataSource, id);
 		} catch (SQLException e) {
 			throw new TransientDataAccessResourceException(e.getMessage(), e);
 		}
 	}
 
-	private Account getViaJDBCInternal(final long id) throws SQLException {
+	/**
+	 * Reads the account from a replica, empty if it fails, or the account is
+	 * missing or stale.
+	 */
+	private Optional<Account> getViaReplica(final long id) {
+		final Account account;
+
+		try {
+			account = this.getViaJDBCInternal(this.replicas.next(), id);
+		} catch (SQLException e) {
+			log.debug("Getting {} via replica failed: {}", id, e.getMessage());
+			return Optional.empty();
+		} catch (IllegalArgumentException e) {
+			log.debug("Account {} is missing from replica.", id);
+			return Optional.empty();
+		}
+
+		if (this.replicas.isStale(account)) {
+			log.debug("Account {}@{} is stale in replica.", id, account.version());
+			return Optional.empty();
+		}
+
+		return Optional.of(account);
+	}
+
+	private Account getViaJDBCInternal(final DataSource dataSource, final long id) throws SQLException {
 		final Account account;
 
 		try (
-			final var conn = this.dataSource.getConnection();
+			final var conn = dataSource.getConnection();
 			final var select = conn.prepareStatement(this.selectSql);
 		) {
 			select.setLong(1, id);
@@ -134,85 +418,455 @@ public abstract class AbstractJDBCAccountService implements AccountService {
 		return account;
 	}
 
+	/**
+	 * Loads the accounts with the specified IDs, the missing ones are skipped.
+	 */
+	protected List<Account> getAllViaJDBC(final Collection<Long> ids) {
+		return this.getAllViaJDBC(ids, true);
+	}
+
+	/**
+	 * Loads the accounts with the specified IDs, the missing ones are skipped.
+	 *
+	 * @param viaReplica if false, reads from the primary only, such as for
+	 * the accounts not written by this service.
+	 */
+	List<Account> getAllViaJDBC(final Collection<Long> ids, final boolean viaReplica) {
+		log.trace("Getting all via JDBC: {}", ids::size);
+
+		if (this.shards != null) {
+			final List<Account> accounts = new ArrayList<>(ids.size());
+			final List<Long> unsharded = new ArrayList<>(ids.size());
+			ids.forEach(id -> {
+				if (this.shards.contains(id)) {
+					accounts.add(this.shards.get(id));
+				} else {
+					unsharded.add(id);
+				}
+			});
+
+			accounts.addAll(this.getAllViaJDBCRouted(unsharded, viaReplica));
+			return accounts;
+		}
+
+		return this.getAllViaJDBCRouted(new ArrayList<>(ids), viaReplica);
+	}
+
+	/**
+	 * Reads the accounts from a replica if any, then the ones failed, missing
+	 * or stale from the primary.
+	 */
+	private List<Account> getAllViaJDBCRouted(final List<Long> ids, final boolean viaReplica) {
+		final List<Account> accounts = new ArrayList<>(ids.size());
+		List<Long> primaryIds = ids;
+
+		if (viaReplica && this.replicas != null && !ids.isEmpty()) {
+			try {
+				final Set<Long> remaining = new HashSet<>(ids);
+
+				for (final var account : this.getAllViaJDBCInternal(this.replicas.next(), ids)) {
+					if (!this.replicas.isStale(account)) {
+						accounts.add(account);
+						remaining.remove(account.id());
+					}
+				}
+
+				primaryIds = new ArrayList<>(remaining);
+			} catch (SQLException e) {
+				log.debug("Getting all via replica failed: {}", e.getMessage());
+			}
+		}
+
+		if (!primaryIds.isEmpty()) {
+			try {
+				accounts.addAll(this.getAllViaJDBCInternal(this.dataSource, primaryIds));
+			} catch (SQLException e) {
+				throw new TransientDataAccessResourceException(e.getMessage(), e);
+			}
+		}
+
+		return accounts;
+	}
+
+	private List<Account> getAllViaJDBCInternal(final DataSource dataSource, final List<Long> ids) throws SQLException {
+		final List<Account> accounts = new ArrayList<>(ids.size());
+
+		try (final var conn = dataSource.getConnection()) {
+			for (int from = 0; from < ids.size(); from += MAX_IN_LIST_SIZE) {
+				final var chunk = ids.subList(from, Math.min(from + MAX_IN_LIST_SIZE, ids.size()));
+				final var selectAllSql = String.format(
+					"select id, available, version from account where id in (%s)",
+					String.join(", ", Collections.nCopies(chunk.size(), "?"))
+				);
+
+				try (final var select = conn.prepareStatement(selectAllSql)) {
+					for (int i = 0; i < chunk.size(); i++) {
+						select.setLong(i + 1, chunk.get(i));
+					}
+
+					try (final ResultSet rs = select.executeQuery()) {
+						while (rs.next()) {
+							accounts.add(new Account(rs.getLong("id"), rs.getLong("available"), rs.getLong("version")));
+						}
+					}
+				}
+			}
+		}
+
+		return accounts;
+	}
+
+	/**
+	 * Runs the callback in a transaction, committed if it returns, rolled
+	 * back if it throws.
+	 *
+	 * @see ConnectionCallback#inTransaction(Connection, ConnectionCallback)
+	 */
+	protected <T> T inTransaction(final Connection conn, final ConnectionCallback<T> callback) throws SQLException {
+		return ConnectionCallback.inTransaction(conn, callback);
+	}
+
+	/**
+	 * Returns the start of a phase to be recorded, zero if the metrics are
+	 * disabled, so they cost no clock reads.
+	 */
+	protected long startTimer() {
+		return this.metrics == null ? 0 : System.nanoTime();
+	}
+
+	protected void recordLatency(final Phase phase, final long start) {
+		if (this.metrics != null) {
+			this.metrics.recordLatency(phase, System.nanoTime() - start);
+		}
+	}
+
+	protected void recordRetry() {
+		if (this.metrics != null) {
+			this.metrics.recordRetry();
+		}
+	}
+
 	@Override
 	public Account addAmount(final long id, final long amount) {
-		var account = this.addAmountViaJDBC(id, amount);
-		this.cache(account);
-		return account;
+		if (this.isSharded(id)) {
+			return this.update(id, () -> this.shards.addAmount(id, amount));
+		}
+
+		return this.update(id, () -> this.addAmountViaJDBC(id, amount));
 	}
 
 	protected abstract Account addAmountViaJDBC(final long id, final long amount);
 
-	protected Optional<Account> getViaJedis(final long id) {
-		final String key = this.getKey(id);
+	@Override
+	public Account withdraw(final long id, final long amount, final long floor) {
+		if (this.isSharded(id)) {
+			return this.update(id, () -> this.shards.withdraw(id, amount, floor));
+		}
+
+		return this.update(id, () -> this.withdrawViaJDBC(id, amount, floor));
+	}
+
+	/**
+	 * Adds the amount, checking the floor in the same statement or row lock
+	 * as the update.
+	 *
+	 * @throws InsufficientAvailableException if the available would fall
+	 * below the floor.
+	 */
+	protected abstract Account withdrawViaJDBC(final long id, final long amount, final long floor);
+
+	boolean isSharded(final long id) {
+		return this.shards != null && this.shards.contains(id);
+	}
+
+	/**
+	 * Writes the account, then caches it.
+	 *
+	 * @throws AccountWrittenException if the account has been written, but
+	 * failed to be cached.
+	 */
+	private Account update(final long id, final Supplier<Account> updateViaJDBC) {
+		final Account account;
+
+		try {
+			final long start = this.startTimer();
+			account = updateViaJDBC.get();
+			this.recordLatency(Phase.JDBC_WRITE, start);
+		} catch (RuntimeException e) {
+			// The write may have been committed, do not serve the old state.
+			if (this.nearCache != null) {
+				this.nearCache.invalidate(id);
+			}
+			throw e;
+		}
+
+		try {
+			if (this.replicas != null) {
+				this.replicas.written(account);
+			}
+
+			this.cache(account);
+			return account;
+		} catch (RuntimeException e) {
+			if (this.nearCache != null) {
+				this.nearCache.invalidate(id);
+			}
+			throw new AccountWrittenException(List.of(account), e);
+		}
+	}
+
+	/**
+	 * Transfers the amount between two accounts in one transaction.
+	 *
+	 * @return the source and the target accounts after transferred.
+	 */
+	public List<Account> transfer(final long from, final long to, final long amount) {
+		if (from == to) {
+			throw new IllegalArgumentException("Can not transfer to the same account.");
+		}
 
-		final Set<String> members;
+		final var accounts = this.applyPostings(List.of(new Posting(from, -amount), new Posting(to, amount)));
+		return accounts.get(0).id() == from ? accounts : List.of(accounts.get(1), accounts.get(0));
+	}
+
+	/**
+	 * Applies the postings in one transaction.
+	 *
+	 * <p>The postings of the same account are summed up, and the rows are
+	 * written in ascending ID order, so concurrent transactions can not wait
+	 * for each other in a cycle.</p>
+	 *
+	 * @return the accounts after applied, in ascending ID order.
+	 * @throws AccountWrittenException if the postings have been applied, but
+	 * the accounts failed to be cached.
+	 */
+	public List<Account> applyPostings(final List<Posting> postings) {
+		final SortedMap<Long, Long> amounts = new TreeMap<>();
+		postings.forEach(posting -> amounts.merge(posting.accountId(), posting.amount(), Long::sum));
+
+		if (amounts.isEmpty()) {
+			return List.of();
+		}
+
+		final List<Account> updated;
+
+		try {
+			final long start = this.startTimer();
+			updated = this.applyPostingsViaJDBC(amounts);
+			this.recordLatency(Phase.JDBC_WRITE, start);
+		} catch (RuntimeException e) {
+			// The write may have been committed, do not serve the old state.
+			if (this.nearCache != null) {
+				amounts.keySet().forEach(this.nearCache::invalidate);
+			}
+			throw e;
+		}
+
+		List<Account> accounts = updated;
+
+		try {
+			// The rows of the split accounts are only parts of them.
+			if (this.shards != null) {
+				accounts = updated.stream()
+					.map(account -> this.isSharded(account.id()) ? this.shards.get(account.id()) : account)
+					.collect(Collectors.toList());
+			}
+
+			if (this.replicas != null) {
+				accounts.forEach(this.replicas::written);
+			}
+
+			this.cacheAll(accounts);
+			return accounts;
+		} catch (RuntimeException e) {
+			if (this.nearCache != null) {
+				amounts.keySet().forEach(this.nearCache::invalidate);
+			}
+			throw new AccountWrittenException(accounts, e);
+		}
+	}
+
+	/**
+	 * Adds the amounts to the accounts in one transaction, in ascending ID order.
+	 *
+	 * @param amounts the amounts by account ID.
+	 * @return the accounts after updated, in ascending ID order.
+	 */
+	protected abstract List<Account> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts);
+
+	protected Optional<Account> getViaJedis(final long id) {
+		final long start = this.startTimer();
+		final Object reply;
 
 		if (this.jedisPool != null) {
 			try (final var jedis = this.jedisPool.getResource()) {
-				members = jedis.zrevrangeByScore(key, "+inf", "-inf", 0, 1);
+				reply = this.cacheLayout.get(jedis, id);
 			}
 		} else {
-			members = this.jedisCluster.zrevrangeByScore(key, "+inf", "-inf", 0, 1);
+			reply = this.cacheLayout.get(this.jedisCluster, id);
 		}
 
-		return members.stream().findFirst().map(this::deserialize);
+		this.recordLatency(Phase.REDIS_READ, start);
+
+		final long decodeStart = this.startTimer();
+		final var account = Optional.ofNullable(this.cacheLayout.getValue(reply)).map(this.codec::decode);
+		this.recordLatency(Phase.DECODE, decodeStart);
+
+		return account;
+	}
+
+	protected Map<Long, Account> getAllViaJedis(final Collection<Long> ids) {
+		final long start = this.startTimer();
+		final var replies = this.pipelined(
+			ids,
+			this.cacheLayout::getKey,
+			this.cacheLayout::get,
+			this.cacheLayout::get
+		);
+
+		this.recordLatency(Phase.REDIS_READ, start);
+
+		final long decodeStart = this.startTimer();
+		final Map<Long, Account> accounts = new HashMap<>(replies.size());
+		replies.forEach((id, reply) -> Optional.ofNullable(this.cacheLayout.getValue(reply)).map(this.codec::decode).ifPresent(account -> accounts.put(id, account)));
+		this.recordLatency(Phase.DECODE, decodeStart);
+
+		return accounts;
 	}
 
 	protected void cache(final Account account) {
 		log.trace("Caching {}@{}: {}", account::id, account::version, account::available);
 
+		final long start = this.startTimer();
+
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				this.cacheLayout.getCacheScript().eval(jedis, this.cacheLayout.getCacheKeys(account), this.getCacheArgs(account));
+			}
+		} else {
+			this.cacheLayout.getCacheScript().eval(this.jedisCluster, this.cacheLayout.getCacheKeys(account), this.getCacheArgs(account));
+		}
+
+		this.recordLatency(Phase.CACHE_WRITE, start);
+
+		if (this.nearCache != null) {
+			this.nearCache.put(account);
+		}
+
+		log.trace("Cached {}@{}: {}", account::id, account::version, account::available);
+	}
+
+	/**
+	 * Caches the accounts in one pipeline, one per node in cluster mode.
+	 */
+	protected void cacheAll(final Collection<Account> accounts) {
+		this.cacheAllViaJedis(accounts);
+
+		if (this.nearCache != null) {
+			accounts.forEach(this.nearCache::put);
+		}
+	}
+
+	/**
+	 * Caches the accounts in Redis only, not in the near cache.
+	 */
+	void cacheAllViaJedis(final Collection<Account> accounts) {
+		log.trace("Caching all {}", accounts::size);
+
+		final long start = this.startTimer();
+
+		this.pipelined(
+			accounts,
+			account -> this.cacheLayout.getKey(account.id()),
+			(pipeline, account) -> this.cacheLayout.getCacheScript().eval(pipeline, this.cacheLayout.getCacheKeys(account), this.getCacheArgs(account)),
+			(cluster, account) -> this.cacheLayout.getCacheScript().eval(cluster, this.cacheLayout.getCacheKeys(account), this.getCacheArgs(account))
+		);
+
+		this.recordLatency(Phase.CACHE_WRITE, start);
+	}
+
+	private List<byte[]> getCacheArgs(final Account account) {
 		if (account.version() < 0) {
 			throw new IllegalArgumentException("Invalid version.");
 		}
 
-		final var key = this.getKey(account.id());
-		final double score = account.version();
-
-		final var member = this.serialize(account);
-		final var params = ZAddParams.zAddParams().nx();
+		return this.cacheLayout.getCacheArgs(
+			account,
+			this.codec.encode(account),
+			EXPIRATION_SECONDS + ThreadLocalRandom.current().nextLong(EXPIRATION_JITTER_SECONDS + 1)
+		);
+	}
 
-		final double minToRemove = 0;
-		final double maxToRemove = score - 1;
+	/**
+	 * Runs a command for each item in pipelines.
+	 *
+	 * <p>In cluster mode, there is one pipeline per node. The items of a node
+	 * whose pipeline failed, such as on a slot migration, fall back to the
+	 * cluster client one by one.</p>
+	 */
+	private <T, R> Map<T, R> pipelined(
+		final Collection<T> items,
+		final Function<T, byte[]> keyFunction,
+		final BiFunction<Pipeline, T, Response<? extends R>> pipelineCommand,
+		final BiFunction<JedisCluster, T, R> clusterCommand
+	) {
+		final Map<T, R> results = new HashMap<>(items.size());
 
-		final var seconds = EXPIRATION_SECONDS;
+		if (items.isEmpty()) {
+			return results;
+		}
 
 		if (this.jedisPool != null) {
-			try (
-				final var jedis = this.jedisPool.getResource();
-				final var pipeline = jedis.pipelined();
-			) {
-				pipeline.zadd(key, score, member, params);
-				pipeline.zremrangeByScore(key, minToRemove, maxToRemove);
-				pipeline.expire(key, seconds);
+			try (final var jedis = this.jedisPool.getResource()) {
+				results.putAll(this.pipelined(jedis, items, pipelineCommand));
 			}
 		} else {
-			this.jedisCluster.zadd(key, score, member, params);
-			this.jedisCluster.zremrangeByScore(key, minToRemove, maxToRemove);
-			this.jedisCluster.expire(key, seconds);
+			this.clusterSlots.groupByNode(items, keyFunction).forEach((pool, group) -> {
+				if (pool != null) {
+					try (final var jedis = pool.getResource()) {
+						results.putAll(this.pipelined(jedis, group, pipelineCommand));
+						return;
+					} catch (JedisException e) {
+						log.debug("Pipeline failed, falling back to cluster client: {}", e.getMessage());
+						this.clusterSlots.refresh();
+					}
+				}
+
+				group.forEach(item -> results.put(item, clusterCommand.apply(this.jedisCluster, item)));
+			});
 		}
 
-		log.trace("Cached {}@{}: {}", account::id, account::version, account::available);
+		return results;
 	}
 
-	private String serialize(final Account account) {
+	private <T, R> Map<T, R> pipelined(
+		final Jedis jedis,
+		final Collection<T> items,
+		final BiFunction<Pipeline, T, Response<? extends R>> command
+	) {
 		try {
-			return this.objectMapper.writeValueAsString(account);
-		} catch (JsonProcessingException e) {
-			throw new IllegalArgumentException(e);
+			return this.sync(jedis, items, command);
+		} catch (JedisNoScriptException e) {
+			// The scripts are idempotent, load and run them all again.
+			this.cacheLayout.getCacheScript().load(jedis);
+			return this.sync(jedis, items, command);
 		}
 	}
 
-	private Account deserialize(final String content) {
-		try {
-			return this.objectMapper.readValue(content, Account.class);
-		} catch (JsonProcessingException e) {
-			throw new IllegalArgumentException(e);
+	private <T, R> Map<T, R> sync(
+		final Jedis jedis,
+		final Collection<T> items,
+		final BiFunction<Pipeline, T, Response<? extends R>> command
+	) {
+		final Map<T, Response<? extends R>> responses = new HashMap<>(items.size());
+
+		try (final var pipeline = jedis.pipelined()) {
+			items.forEach(item -> responses.put(item, command.apply(pipeline, item)));
 		}
-	}
 
-	private String getKey(final long id) {
-		return String.format("account:%d", id);
+		final Map<T, R> results = new HashMap<>(items.size());
+		responses.forEach((item, response) -> results.put(item, response.get()));
+		return results;
 	}
 
 }
@@ -0,0 +1,216 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * Loads the accounts from the database into Redis, such as after a failover
+ * or a flush, so the gets do not all fall through to the database.
+ *
+ * <p>The hot accounts, if any, are loaded first. Then the table is split into
+ * ID ranges, each streamed by its own worker with a forward-only cursor, and
+ * cached in pipelines of the fetch size, grouped by node in cluster mode.
+ * On MySQL the cursor needs {@code useCursorFetch=true}, or the whole range
+ * is read into memory.</p>
+ *
+ * <p>An account is never cached over a newer version, so it is safe to warm
+ * up while the accounts are being updated. The accounts are read from the
+ * primary only, a replica may lag behind the writes of other processes,
+ * which the service does not know of.</p>
+ */
+public class AccountCacheWarmer {
+
+	private static final int DEFAULT_FETCH_SIZE = 10_000;
+
+	private final Logger log = LogManager.getLogger(AccountCacheWarmer.class);
+
+	private final AbstractJDBCAccountService accountService;
+
+	private final DataSource dataSource;
+
+	private final int parallelism;
+
+	private final int fetchSize;
+
+	public AccountCacheWarmer(final AbstractJDBCAccountService accountService) {
+		this(accountService, Runtime.getRuntime().availableProcessors(), DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * @param parallelism the number of ranges streamed at the same time,
+	 * should not be larger than the connection pool.
+	 * @param fetchSize the number of rows per fetch and pipeline.
+	 */
+	public AccountCacheWarmer(
+		final AbstractJDBCAccountService accountService,
+		final int parallelism,
+		final int fetchSize
+	) {
+		if (parallelism < 1 || fetchSize < 1) {
+			throw new IllegalArgumentException("Parallelism and fetch size should be positive.");
+		}
+
+		this.accountService = accountService;
+		this.dataSource = accountService.dataSource;
+		this.parallelism = parallelism;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Warms up all the accounts.
+	 *
+	 * @return the number of accounts cached.
+	 */
+	public long warmUp() {
+		return this.warmUp(List.of());
+	}
+
+	/**
+	 * Warms up the hot accounts first, then all the accounts.
+	 *
+	 * @param hotIds the IDs of the hot accounts, in the order to be cached.
+	 * @return the number of accounts cached, the hot ones are counted twice.
+	 */
+	public long warmUp(final Collection<Long> hotIds) {
+		final long start = System.nanoTime();
+		final var cached = new AtomicLong();
+
+		final List<Long> ids = new ArrayList<>(hotIds);
+		for (int from = 0; from < ids.size(); from += this.fetchSize) {
+			final var chunk = ids.subList(from, Math.min(from + this.fetchSize, ids.size()));
+			this.cacheAll(this.accountService.getAllViaJDBC(chunk, false), cached);
+		}
+
+		log.info("Warmed up {} hot accounts, {} ms.", cached::get, () -> (System.nanoTime() - start) / 1_000_000);
+
+		final var range = this.getIdRange();
+		if (range == null) {
+			return cached.get();
+		}
+
+		final long minId = range[0];
+		final long maxId = range[1];
+		final long rangeSize = Math.max(1, (maxId - minId) / this.parallelism + 1);
+
+		final var executor = Executors.newFixedThreadPool(this.parallelism);
+		final List<Future<?>> futures = new ArrayList<>(this.parallelism);
+
+		try {
+			for (long from = minId; from <= maxId; from += rangeSize) {
+				final long f = from;
+				final long t = Math.min(maxId, from + rangeSize - 1);
+				futures.add(executor.submit(() -> {
+					this.warmUp(f, t, cached);
+					return null;
+				}));
+			}
+
+			for (final var future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Warming up interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new DataAccessResourceFailureException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		log.info("Warmed up {} accounts, {} ms.", cached::get, () -> (System.nanoTime() - start) / 1_000_000);
+
+		return cached.get();
+	}
+
+	private long[] getIdRange() {
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var select = conn.prepareStatement("select min(id), max(id) from account");
+			final var rs = select.executeQuery();
+		) {
+			rs.next();
+			final long minId = rs.getLong(1);
+			return rs.wasNull() ? null : new long[] { minId, rs.getLong(2) };
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	private void warmUp(final long from, final long to, final AtomicLong cached) throws SQLException {
+		final List<Long> shardedIds = new ArrayList<>();
+
+		try (final var conn = this.dataSource.getConnection()) {
+			// PostgreSQL only streams with a cursor in a transaction.
+			ConnectionCallback.inTransaction(conn, c -> {
+				try (final var select = c.prepareStatement(
+					"select id, available, version from account where id between ? and ?",
+					ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY
+				)) {
+					select.setFetchSize(this.fetchSize);
+					select.setLong(1, from);
+					select.setLong(2, to);
+
+					try (final var rs = select.executeQuery()) {
+						final List<Account> accounts = new ArrayList<>(this.fetchSize);
+
+						while (rs.next()) {
+							final long id = rs.getLong("id");
+
+							// The row of a split account is only a part of it.
+							if (this.accountService.isSharded(id)) {
+								shardedIds.add(id);
+								continue;
+							}
+
+							accounts.add(new Account(id, rs.getLong("available"), rs.getLong("version")));
+
+							if (accounts.size() >= this.fetchSize) {
+								this.cacheAll(accounts, cached);
+								accounts.clear();
+							}
+						}
+
+						this.cacheAll(accounts, cached);
+					}
+				}
+
+				return null;
+			});
+		}
+
+		// Read after the cursor is closed, not to hold two connections per
+		// worker, which could wait for each other on a pool of the parallelism.
+		if (!shardedIds.isEmpty()) {
+			this.cacheAll(this.accountService.getAllViaJDBC(shardedIds, false), cached);
+		}
+
+		log.debug("Warmed up accounts {}-{}.", from, to);
+	}
+
+	private void cacheAll(final List<Account> accounts, final AtomicLong cached) {
+		if (!accounts.isEmpty()) {
+			this.accountService.cacheAllViaJedis(accounts);
+			cached.addAndGet(accounts.size());
+		}
+	}
+
+}
@@ -0,0 +1,17 @@
+package org.oxerr.example.account.service.jdbc;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Encodes accounts into cached values.
+ *
+ * <p>Values written by one codec can not be read by another, so the codec
+ * should not be changed while the cache holds values.</p>
+ */
+public interface AccountCodec {
+
+	byte[] encode(final Account account);
+
+	Account decode(final byte[] bytes);
+
+}
@@ -0,0 +1,65 @@
+package org.oxerr.example.account.service.jdbc;
+
+/**
+ * Receives the metrics of an account service on its hot path, so the
+ * implementations should record without blocking.
+ */
+public interface AccountMetrics {
+
+	enum Phase {
+
+		/**
+		 * Looking up the accounts in the near cache, hit or missed.
+		 */
+		NEAR_CACHE_READ,
+
+		/**
+		 * Reading the cached accounts from Redis, excluding the decoding.
+		 */
+		REDIS_READ,
+
+		/**
+		 * Decoding the cached accounts.
+		 */
+		DECODE,
+
+		/**
+		 * Reading the accounts missed by the cache from the database.
+		 */
+		JDBC_READ,
+
+		/**
+		 * Writing the accounts to the database, including the retries.
+		 */
+		JDBC_WRITE,
+
+		/**
+		 * Caching the accounts in Redis.
+		 */
+		CACHE_WRITE,
+
+		/**
+		 * Waiting for a connection from the pool.
+		 */
+		POOL_WAIT,
+
+	}
+
+	void recordLatency(final Phase phase, final long nanos);
+
+	/**
+	 * Records the accounts found in Redis, not counting the near cache.
+	 */
+	void recordCacheHits(final long count);
+
+	/**
+	 * Records the accounts missed by Redis.
+	 */
+	void recordCacheMisses(final long count);
+
+	/**
+	 * Records an update retried after an optimistic locking conflict.
+	 */
+	void recordRetry();
+
+}
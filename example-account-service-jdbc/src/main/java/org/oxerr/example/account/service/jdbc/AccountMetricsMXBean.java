@@ -0,0 +1,29 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.Map;
+
+/**
+ * The metrics of an account service exposed through JMX.
+ */
+public interface AccountMetricsMXBean {
+
+	/**
+	 * Returns the latency summaries by phase name, of the phases recorded.
+	 */
+	Map<String, LatencySummary> getLatencies();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+	/**
+	 * Returns the ratio of the cache hits to the cache lookups, or zero if
+	 * there has been no lookup.
+	 */
+	double getCacheHitRatio();
+
+	long getRetries();
+
+	void reset();
+
+}
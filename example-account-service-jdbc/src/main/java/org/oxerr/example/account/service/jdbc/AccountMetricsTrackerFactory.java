@@ -0,0 +1,33 @@
+package org.oxerr.example.account.service.jdbc;
+
+import org.oxerr.example.account.service.jdbc.AccountMetrics.Phase;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Records the connection waits of a HikariCP pool, to be set by
+ * {@code HikariConfig.setMetricsTrackerFactory}.
+ */
+public class AccountMetricsTrackerFactory implements MetricsTrackerFactory {
+
+	private final AccountMetrics metrics;
+
+	public AccountMetricsTrackerFactory(final AccountMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public IMetricsTracker create(final String poolName, final PoolStats poolStats) {
+		return new IMetricsTracker() {
+
+			@Override
+			public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+				metrics.recordLatency(Phase.POOL_WAIT, elapsedAcquiredNanos);
+			}
+
+		};
+	}
+
+}
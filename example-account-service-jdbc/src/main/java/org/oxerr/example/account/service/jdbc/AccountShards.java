@@ -0,0 +1,219 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * Splits hot accounts into sub-rows of the {@code account_shard} table, so
+ * their writers do not serialize on one row.
+ *
+ * <p>An amount is added to a random sub-row in one statement. The account is
+ * the sum of its row and all its sub-rows, read in one statement, so it is a
+ * consistent snapshot. The version is the sum of the versions, which only
+ * grows and identifies the snapshot, so the account is cached as any other
+ * account.</p>
+ */
+class AccountShards {
+
+	private final Logger log = LogManager.getLogger(AccountShards.class);
+
+	private final DataSource dataSource;
+
+	private final Map<Long, Integer> shards;
+
+	private final String selectSql;
+
+	private final String updateSql;
+
+	private final String selectForUpdateSql;
+
+	private final String selectShardsForUpdateSql;
+
+	private final String updateAccountSql;
+
+	AccountShards(final DataSource dataSource, final Map<Long, Integer> shards) {
+		shards.forEach((id, count) -> {
+			if (count < 1) {
+				throw new IllegalArgumentException(String.format("Shards of account with ID %d should be positive.", id));
+			}
+		});
+
+		this.dataSource = dataSource;
+		this.shards = Map.copyOf(shards);
+		this.selectSql = "select available + (select coalesce(sum(available), 0) from account_shard where id = ?) as available,"
+			+ " version + (select coalesce(sum(version), 0) from account_shard where id = ?) as version"
+			+ " from account where id = ?";
+		this.updateSql = "update account_shard set available = available + ?, version = version + 1 where id = ? and shard = ?";
+		this.selectForUpdateSql = "select available, version from account where id = ? for update";
+		this.selectShardsForUpdateSql = "select available, version from account_shard where id = ? order by shard for update";
+		this.updateAccountSql = "update account set available = available + ?, version = version + 1 where id = ?";
+	}
+
+	boolean contains(final long id) {
+		return this.shards.containsKey(id);
+	}
+
+	/**
+	 * Inserts the missing sub-rows, with zero available and version.
+	 */
+	void createShards() {
+		try (final var conn = this.dataSource.getConnection()) {
+			for (final var entry : this.shards.entrySet()) {
+				this.createShards(conn, entry.getKey(), entry.getValue());
+			}
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	private void createShards(final Connection conn, final long id, final int count) throws SQLException {
+		final Set<Integer> existing = new HashSet<>();
+
+		try (final var select = conn.prepareStatement("select shard from account_shard where id = ?")) {
+			select.setLong(1, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				while (rs.next()) {
+					existing.add(rs.getInt("shard"));
+				}
+			}
+		}
+
+		try (final var insert = conn.prepareStatement("insert into account_shard(id, shard, available, version) values(?, ?, 0, 0)")) {
+			for (int shard = 0; shard < count; shard++) {
+				if (!existing.contains(shard)) {
+					insert.setLong(1, id);
+					insert.setInt(2, shard);
+					insert.addBatch();
+				}
+			}
+
+			insert.executeBatch();
+		}
+
+		log.trace("Account {} split into {} shards, {} existed.", id, count, existing.size());
+	}
+
+	Account get(final long id) {
+		try (final var conn = this.dataSource.getConnection()) {
+			return this.get(conn, id);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Adds the amount to a random sub-row.
+	 *
+	 * @return the account right after updated, which may include the
+	 * amounts added concurrently to the other sub-rows.
+	 */
+	Account addAmount(final long id, final long amount) {
+		final int shard = ThreadLocalRandom.current().nextInt(this.shards.get(id));
+
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var update = conn.prepareStatement(this.updateSql);
+		) {
+			update.setLong(1, amount);
+			update.setLong(2, id);
+			update.setInt(3, shard);
+
+			if (update.executeUpdate() < 1) {
+				throw new IllegalArgumentException(String.format("No such account shard with ID %d and shard %d.", id, shard));
+			}
+
+			return this.get(conn, id);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Locks the row and the sub-rows, in that order, and adds the amount to
+	 * the row unless the sum would fall below the floor. The adds to the
+	 * sub-rows only lock one of them each, so they can not wait for each
+	 * other in a cycle.
+	 *
+	 * @throws InsufficientAvailableException if the available would fall
+	 * below the floor.
+	 */
+	Account withdraw(final long id, final long amount, final long floor) {
+		try (final var conn = this.dataSource.getConnection()) {
+			return ConnectionCallback.inTransaction(conn, c -> this.withdraw(c, id, amount, floor));
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	private Account withdraw(final Connection conn, final long id, final long amount, final long floor) throws SQLException {
+		long available = 0;
+		long version = 0;
+
+		try (final var select = conn.prepareStatement(this.selectForUpdateSql)) {
+			select.setLong(1, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				if (!rs.next()) {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+
+				available += rs.getLong("available");
+				version += rs.getLong("version");
+			}
+		}
+
+		try (final var select = conn.prepareStatement(this.selectShardsForUpdateSql)) {
+			select.setLong(1, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				while (rs.next()) {
+					available += rs.getLong("available");
+					version += rs.getLong("version");
+				}
+			}
+		}
+
+		if (available + amount < floor) {
+			throw new InsufficientAvailableException(new Account(id, available, version), amount, floor);
+		}
+
+		try (final var update = conn.prepareStatement(this.updateAccountSql)) {
+			update.setLong(1, amount);
+			update.setLong(2, id);
+			update.executeUpdate();
+		}
+
+		return new Account(id, available + amount, version + 1);
+	}
+
+	private Account get(final Connection conn, final long id) throws SQLException {
+		try (final var select = conn.prepareStatement(this.selectSql)) {
+			select.setLong(1, id);
+			select.setLong(2, id);
+			select.setLong(3, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				if (rs.next()) {
+					return new Account(id, rs.getLong("available"), rs.getLong("version"));
+				} else {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+			}
+		}
+	}
+
+}
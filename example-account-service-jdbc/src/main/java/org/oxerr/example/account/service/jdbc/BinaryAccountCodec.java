@@ -0,0 +1,48 @@
+package org.oxerr.example.account.service.jdbc;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Encodes the ID, available and version as three big-endian longs.
+ */
+public class BinaryAccountCodec implements AccountCodec {
+
+	private static final int LENGTH = 3 * Long.BYTES;
+
+	@Override
+	public byte[] encode(final Account account) {
+		final var bytes = new byte[LENGTH];
+		putLong(bytes, 0, account.id());
+		putLong(bytes, Long.BYTES, account.available());
+		putLong(bytes, 2 * Long.BYTES, account.version());
+		return bytes;
+	}
+
+	@Override
+	public Account decode(final byte[] bytes) {
+		if (bytes.length != LENGTH) {
+			throw new IllegalArgumentException(String.format("Invalid length %d.", bytes.length));
+		}
+
+		return new Account(
+			getLong(bytes, 0),
+			getLong(bytes, Long.BYTES),
+			getLong(bytes, 2 * Long.BYTES)
+		);
+	}
+
+	private static void putLong(final byte[] bytes, final int offset, final long value) {
+		for (int i = Long.BYTES - 1; i >= 0; i--) {
+			bytes[offset + i] = (byte) (value >>> (8 * (Long.BYTES - 1 - i)));
+		}
+	}
+
+	private static long getLong(final byte[] bytes, final int offset) {
+		long value = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+}
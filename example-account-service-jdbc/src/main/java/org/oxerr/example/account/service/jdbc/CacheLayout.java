@@ -0,0 +1,53 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.List;
+
+import org.oxerr.example.account.Account;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+/**
+ * Lays out the cached accounts in Redis keys.
+ *
+ * <p>An account is only cached by the script of the layout, which never
+ * replaces a newer version. Layouts use different keys, but the values of one
+ * layout can not be read by another, so the layout should not be changed
+ * while the cache holds values.</p>
+ *
+ * <p>The keys start with the key prefix of the layout, so services caching
+ * the same accounts differently, such as by another codec, should be given
+ * layouts of different prefixes.</p>
+ */
+public interface CacheLayout {
+
+	/**
+	 * Returns the prefix of the keys of this layout.
+	 */
+	String getKeyPrefix();
+
+	/**
+	 * Returns the key holding the account, which may hold other accounts.
+	 */
+	byte[] getKey(final long id);
+
+	Object get(final Jedis jedis, final long id);
+
+	Object get(final JedisCluster jedisCluster, final long id);
+
+	Response<?> get(final Pipeline pipeline, final long id);
+
+	/**
+	 * Returns the encoded account in the reply of a get, or null if not cached.
+	 */
+	byte[] getValue(final Object reply);
+
+	RedisScript getCacheScript();
+
+	List<byte[]> getCacheKeys(final Account account);
+
+	List<byte[]> getCacheArgs(final Account account, final byte[] value, final long expirationSeconds);
+
+}
@@ -0,0 +1,90 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Maps the slots of a Redis cluster to the pools of their nodes, so the
+ * commands of the keys served by the same node can be pipelined.
+ */
+class ClusterSlots {
+
+	private final Logger log = LogManager.getLogger(ClusterSlots.class);
+
+	private final JedisCluster jedisCluster;
+
+	private volatile String[] nodes;
+
+	ClusterSlots(final JedisCluster jedisCluster) {
+		this.jedisCluster = jedisCluster;
+	}
+
+	/**
+	 * Groups the items by the pool of the node serving their keys.
+	 *
+	 * @return the groups, the items of unknown slots are under the null key.
+	 */
+	<T> Map<JedisPool, List<T>> groupByNode(
+		final Collection<T> items,
+		final Function<T, byte[]> keyFunction
+	) {
+		if (this.nodes == null) {
+			this.refresh();
+		}
+
+		final var slotNodes = this.nodes;
+		final var pools = this.jedisCluster.getClusterNodes();
+		final Map<JedisPool, List<T>> groups = new HashMap<>();
+
+		for (final var item : items) {
+			final int slot = JedisClusterCRC16.getSlot(keyFunction.apply(item));
+			final var node = slotNodes[slot];
+			final var pool = node == null ? null : pools.get(node);
+			groups.computeIfAbsent(pool, p -> new ArrayList<>()).add(item);
+		}
+
+		return groups;
+	}
+
+	void refresh() {
+		final var slotNodes = new String[JedisCluster.HASHSLOTS];
+
+		for (final var pool : this.jedisCluster.getClusterNodes().values()) {
+			try (final var jedis = pool.getResource()) {
+				for (final var range : jedis.clusterSlots()) {
+					final var slotInfo = (List<?>) range;
+					final var start = ((Long) slotInfo.get(0)).intValue();
+					final var end = ((Long) slotInfo.get(1)).intValue();
+					final var master = (List<?>) slotInfo.get(2);
+					final var node = SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1);
+
+					for (int slot = start; slot <= end; slot++) {
+						slotNodes[slot] = node;
+					}
+				}
+
+				this.nodes = slotNodes;
+				return;
+			} catch (JedisException e) {
+				log.debug("Getting cluster slots failed: {}", e.getMessage());
+			}
+		}
+
+		// No node reachable, every key falls back to the cluster client.
+		this.nodes = slotNodes;
+	}
+
+}
@@ -0,0 +1,43 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Work done with a connection, such as in a transaction.
+ */
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+
+	T doInConnection(Connection conn) throws SQLException;
+
+	/**
+	 * Runs the callback in a transaction, committed if it returns, rolled
+	 * back if it throws.
+	 *
+	 * <p>The auto-commit is only turned off, and back on after, if it is on,
+	 * so a connection from a pool without auto-commit costs no extra round
+	 * trips.</p>
+	 */
+	static <T> T inTransaction(final Connection conn, final ConnectionCallback<T> callback) throws SQLException {
+		final var autoCommit = conn.getAutoCommit();
+
+		if (autoCommit) {
+			conn.setAutoCommit(false);
+		}
+
+		try {
+			final var result = callback.doInConnection(conn);
+			conn.commit();
+			return result;
+		} catch (SQLException | RuntimeException e) {
+			conn.rollback();
+			throw e;
+		} finally {
+			if (autoCommit) {
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.List;
+
+import org.oxerr.example.account.Account;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Hash buckets of consecutive accounts, each a field of the version and the
+ * encoded account, replaced by a compare-and-set script.
+ *
+ * <p>Costs the least memory per account while Redis keeps the buckets in its
+ * compact encoding, so the bucket size should not be larger than
+ * {@code hash-max-ziplist-entries}, 128 by default, and the values not longer
+ * than {@code hash-max-ziplist-value}, 64 bytes by default, which fits the
+ * {@link BinaryAccountCodec} but not always the {@link JsonAccountCodec}.</p>
+ *
+ * <p>The expiration is of the bucket, refreshed whenever any of its accounts
+ * is cached.</p>
+ */
+public class HashCacheLayout implements CacheLayout {
+
+	private static final String DEFAULT_KEY_PREFIX = "account:h:";
+
+	private static final int DEFAULT_BUCKET_SIZE = 100;
+
+	/**
+	 * Sets the field unless the cached version is the same or newer, and
+	 * refreshes the expiration, atomically in one round trip.
+	 */
+	private static final String CACHE_SCRIPT = String.join("\n",
+		"local current = redis.call('HGET', KEYS[1], ARGV[1])",
+		"if not current or tonumber(string.match(current, '^%d+')) < tonumber(ARGV[2]) then",
+		"	redis.call('HSET', KEYS[1], ARGV[1], ARGV[2] .. ':' .. ARGV[3])",
+		"end",
+		"return redis.call('EXPIRE', KEYS[1], ARGV[4])"
+	);
+
+	private final RedisScript cacheScript = new RedisScript(CACHE_SCRIPT);
+
+	private final String keyPrefix;
+
+	private final int bucketSize;
+
+	public HashCacheLayout() {
+		this(DEFAULT_BUCKET_SIZE);
+	}
+
+	public HashCacheLayout(final int bucketSize) {
+		this(DEFAULT_KEY_PREFIX, bucketSize);
+	}
+
+	public HashCacheLayout(final String keyPrefix) {
+		this(keyPrefix, DEFAULT_BUCKET_SIZE);
+	}
+
+	/**
+	 * @param keyPrefix the prefix of the keys, followed by the bucket.
+	 * @param bucketSize the number of accounts per hash.
+	 */
+	public HashCacheLayout(final String keyPrefix, final int bucketSize) {
+		if (bucketSize < 1) {
+			throw new IllegalArgumentException("Bucket size should be positive.");
+		}
+
+		this.keyPrefix = keyPrefix;
+		this.bucketSize = bucketSize;
+	}
+
+	@Override
+	public String getKeyPrefix() {
+		return this.keyPrefix;
+	}
+
+	@Override
+	public byte[] getKey(final long id) {
+		return SafeEncoder.encode(this.keyPrefix + Math.floorDiv(id, this.bucketSize));
+	}
+
+	@Override
+	public Object get(final Jedis jedis, final long id) {
+		return jedis.hget(this.getKey(id), this.getField(id));
+	}
+
+	@Override
+	public Object get(final JedisCluster jedisCluster, final long id) {
+		return jedisCluster.hget(this.getKey(id), this.getField(id));
+	}
+
+	@Override
+	public Response<?> get(final Pipeline pipeline, final long id) {
+		return pipeline.hget(this.getKey(id), this.getField(id));
+	}
+
+	@Override
+	public byte[] getValue(final Object reply) {
+		return VersionedValues.getValue((byte[]) reply);
+	}
+
+	@Override
+	public RedisScript getCacheScript() {
+		return this.cacheScript;
+	}
+
+	@Override
+	public List<byte[]> getCacheKeys(final Account account) {
+		return List.of(this.getKey(account.id()));
+	}
+
+	@Override
+	public List<byte[]> getCacheArgs(final Account account, final byte[] value, final long expirationSeconds) {
+		return List.of(
+			this.getField(account.id()),
+			Protocol.toByteArray(account.version()),
+			value,
+			Protocol.toByteArray(expirationSeconds)
+		);
+	}
+
+	private byte[] getField(final long id) {
+		return Protocol.toByteArray(Math.floorMod(id, this.bucketSize));
+	}
+
+}
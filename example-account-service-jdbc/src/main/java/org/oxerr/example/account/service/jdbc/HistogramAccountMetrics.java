@@ -0,0 +1,130 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Keeps the metrics in memory, the latencies in HdrHistograms, which record
+ * wait-free, with 3 significant digits up to an hour.
+ */
+public class HistogramAccountMetrics implements AccountMetrics, AccountMetricsMXBean {
+
+	private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+
+	private final Map<Phase, Histogram> histograms;
+
+	private final LongAdder cacheHits;
+
+	private final LongAdder cacheMisses;
+
+	private final LongAdder retries;
+
+	public HistogramAccountMetrics() {
+		this.histograms = new EnumMap<>(Phase.class);
+		for (final var phase : Phase.values()) {
+			this.histograms.put(phase, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+		}
+
+		this.cacheHits = new LongAdder();
+		this.cacheMisses = new LongAdder();
+		this.retries = new LongAdder();
+	}
+
+	/**
+	 * Registers this as an MXBean with the platform MBean server.
+	 *
+	 * @param name the name of the service, to tell the services apart.
+	 */
+	public void registerMBean(final String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+				this,
+				new ObjectName("org.oxerr.example.account:type=AccountMetrics,name=" + ObjectName.quote(name))
+			);
+		} catch (JMException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void recordLatency(final Phase phase, final long nanos) {
+		this.histograms.get(phase).recordValue(Math.min(Math.max(nanos, 0), HIGHEST_TRACKABLE_NANOS));
+	}
+
+	@Override
+	public void recordCacheHits(final long count) {
+		this.cacheHits.add(count);
+	}
+
+	@Override
+	public void recordCacheMisses(final long count) {
+		this.cacheMisses.add(count);
+	}
+
+	@Override
+	public void recordRetry() {
+		this.retries.increment();
+	}
+
+	/**
+	 * Returns a copy of the latencies of the phase, in nanoseconds.
+	 */
+	public Histogram getHistogram(final Phase phase) {
+		return this.histograms.get(phase).copy();
+	}
+
+	@Override
+	public Map<String, LatencySummary> getLatencies() {
+		final Map<String, LatencySummary> latencies = new LinkedHashMap<>();
+
+		this.histograms.forEach((phase, histogram) -> {
+			final var copy = histogram.copy();
+			if (copy.getTotalCount() > 0) {
+				latencies.put(phase.name(), new LatencySummary(copy));
+			}
+		});
+
+		return latencies;
+	}
+
+	@Override
+	public long getCacheHits() {
+		return this.cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return this.cacheMisses.sum();
+	}
+
+	@Override
+	public double getCacheHitRatio() {
+		final long hits = this.getCacheHits();
+		final long lookups = hits + this.getCacheMisses();
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public long getRetries() {
+		return this.retries.sum();
+	}
+
+	@Override
+	public void reset() {
+		this.histograms.values().forEach(Histogram::reset);
+		this.cacheHits.reset();
+		this.cacheMisses.reset();
+		this.retries.reset();
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.io.IOException;
+
+import org.oxerr.example.account.Account;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonAccountCodec implements AccountCodec {
+
+	private final ObjectMapper objectMapper;
+
+	public JsonAccountCodec() {
+		this(new ObjectMapper());
+	}
+
+	public JsonAccountCodec(final ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public byte[] encode(final Account account) {
+		try {
+			return this.objectMapper.writeValueAsBytes(account);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public Account decode(final byte[] bytes) {
+		try {
+			return this.objectMapper.readValue(bytes, Account.class);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+}
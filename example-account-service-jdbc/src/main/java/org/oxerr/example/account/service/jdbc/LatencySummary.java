@@ -0,0 +1,65 @@
+package org.oxerr.example.account.service.jdbc;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Summary of the latencies of a phase, in microseconds.
+ */
+public class LatencySummary {
+
+	private static final double NANOS_PER_MICRO = 1_000.0;
+
+	private final long count;
+
+	private final double mean;
+
+	private final double p50;
+
+	private final double p99;
+
+	private final double p999;
+
+	private final double max;
+
+	public LatencySummary(final Histogram histogram) {
+		this.count = histogram.getTotalCount();
+		this.mean = histogram.getMean() / NANOS_PER_MICRO;
+		this.p50 = histogram.getValueAtPercentile(50) / NANOS_PER_MICRO;
+		this.p99 = histogram.getValueAtPercentile(99) / NANOS_PER_MICRO;
+		this.p999 = histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+		this.max = histogram.getMaxValue() / NANOS_PER_MICRO;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getP50() {
+		return p50;
+	}
+
+	public double getP99() {
+		return p99;
+	}
+
+	public double getP999() {
+		return p999;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"count=%d, mean=%.1f, p50=%.1f, p99=%.1f, p99.9=%.1f, max=%.1f",
+			this.count, this.mean, this.p50, this.p99, this.p999, this.max
+		);
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Bounded in-process cache in front of Redis.
+ *
+ * <p>An entry is never replaced by an account with an older version. When
+ * the cache grows over its maximum size, expired entries are evicted first,
+ * then arbitrary ones, down to nine tenths of the maximum size.</p>
+ */
+public class NearCache {
+
+	private final int maximumSize;
+
+	private final long ttlNanos;
+
+	private final ConcurrentMap<Long, Entry> entries;
+
+	public NearCache(final int maximumSize, final Duration ttl) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size should be positive.");
+		}
+
+		this.maximumSize = maximumSize;
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new ConcurrentHashMap<>();
+	}
+
+	public Optional<Account> get(final long id) {
+		final var entry = this.entries.get(id);
+
+		if (entry == null) {
+			return Optional.empty();
+		}
+
+		if (entry.isExpired(System.nanoTime())) {
+			this.entries.remove(id, entry);
+			return Optional.empty();
+		}
+
+		return Optional.of(entry.account());
+	}
+
+	public void put(final Account account) {
+		final long expiresAt = System.nanoTime() + this.ttlNanos;
+
+		this.entries.compute(account.id(), (id, entry) -> {
+			if (entry != null && entry.account().version() > account.version()) {
+				return entry;
+			} else {
+				return new Entry(account, expiresAt);
+			}
+		});
+
+		if (this.entries.size() > this.maximumSize) {
+			this.evict();
+		}
+	}
+
+	public void invalidate(final long id) {
+		this.entries.remove(id);
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	private void evict() {
+		final long now = System.nanoTime();
+		this.entries.values().removeIf(entry -> entry.isExpired(now));
+
+		final int target = this.maximumSize - this.maximumSize / 10;
+		final var iterator = this.entries.keySet().iterator();
+		while (this.entries.size() > target && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private record Entry(Account account, long expiresAt) {
+
+		boolean isExpired(final long now) {
+			return now - this.expiresAt >= 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Lua script run by EVALSHA, falling back to EVAL, which also caches the
+ * script on the server, when the server does not have it yet.
+ */
+public class RedisScript {
+
+	private final byte[] script;
+
+	private final byte[] sha1;
+
+	public RedisScript(final String script) {
+		this.script = SafeEncoder.encode(script);
+		this.sha1 = SafeEncoder.encode(sha1Hex(this.script));
+	}
+
+	public Object eval(final Jedis jedis, final List<byte[]> keys, final List<byte[]> args) {
+		try {
+			return jedis.evalsha(this.sha1, keys, args);
+		} catch (JedisNoScriptException e) {
+			return jedis.eval(this.script, keys, args);
+		}
+	}
+
+	public Object eval(final JedisCluster jedisCluster, final List<byte[]> keys, final List<byte[]> args) {
+		try {
+			return jedisCluster.evalsha(this.sha1, keys, args);
+		} catch (JedisNoScriptException e) {
+			return jedisCluster.eval(this.script, keys, args);
+		}
+	}
+
+	/**
+	 * Queues the script in the pipeline, {@link #load(Jedis)} should be
+	 * called when the response is a {@link JedisNoScriptException}.
+	 */
+	public Response<Object> eval(final Pipeline pipeline, final List<byte[]> keys, final List<byte[]> args) {
+		return pipeline.evalsha(this.sha1, keys, args);
+	}
+
+	public void load(final Jedis jedis) {
+		jedis.scriptLoad(this.script);
+	}
+
+	private static String sha1Hex(final byte[] bytes) {
+		try {
+			final var digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+			final var hex = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Read replicas, taken in turn, and the latest versions of the accounts
+ * written by this service, below which an account read from a replica is
+ * stale.
+ *
+ * <p>A written version is kept for the max lag of the replicas, after which
+ * the replicas are assumed to have caught up with it. The versions are kept
+ * in two generations, the current one is started every max lag, and the one
+ * before the previous is dropped, so a version is kept for one to two max
+ * lags, and is never scanned for.</p>
+ *
+ * <p>When the current generation is full, it is started early, and the
+ * versions dropped may be younger than the max lag, so the accounts of those
+ * are taken as stale whatever read from a replica, until those would have
+ * been dropped. Only if that happens again before then, and the accounts
+ * would be more than the max kept, every account is taken as stale for the
+ * time.</p>
+ */
+class Replicas {
+
+	private static final int MAX_WRITTEN_VERSIONS = 100_000;
+
+	private final List<DataSource> dataSources;
+
+	private final long maxLagNanos;
+
+	private final AtomicInteger next;
+
+	private final AtomicReference<Generations> generations;
+
+	private volatile long staleUntil;
+
+	Replicas(final List<DataSource> dataSources, final Duration maxLag) {
+		if (dataSources.isEmpty()) {
+			throw new IllegalArgumentException("Replicas should not be empty.");
+		}
+
+		final long now = System.nanoTime();
+
+		this.dataSources = List.copyOf(dataSources);
+		this.maxLagNanos = maxLag.toNanos();
+		this.next = new AtomicInteger();
+		this.generations = new AtomicReference<>(new Generations(new ConcurrentHashMap<>(), Map.of(), now + this.maxLagNanos, Set.of(), now));
+		this.staleUntil = now;
+	}
+
+	DataSource next() {
+		return this.dataSources.get(Math.floorMod(this.next.getAndIncrement(), this.dataSources.size()));
+	}
+
+	/**
+	 * Records the version written by this service.
+	 */
+	void written(final Account account) {
+		final long now = System.nanoTime();
+
+		var generations = this.generations.get();
+
+		if (now - generations.rotateAt() >= 0 || generations.current().size() >= MAX_WRITTEN_VERSIONS / 2) {
+			generations = this.rotate(generations, now);
+		}
+
+		generations.current().merge(account.id(), account.version(), Math::max);
+	}
+
+	/**
+	 * Returns true if the account is older than the latest version written,
+	 * or the version written has been dropped early.
+	 */
+	boolean isStale(final Account account) {
+		final long now = System.nanoTime();
+
+		if (now - this.staleUntil < 0) {
+			return true;
+		}
+
+		final var generations = this.generations.get();
+		return isOlder(account, generations.current())
+			|| isOlder(account, generations.previous())
+			|| now - generations.droppedUntil() < 0 && generations.dropped().contains(account.id());
+	}
+
+	/**
+	 * Starts a new current generation, unless another thread has.
+	 *
+	 * @return the generations after rotated.
+	 */
+	private Generations rotate(final Generations generations, final long now) {
+		Set<Long> dropped = generations.dropped();
+		long droppedUntil = generations.droppedUntil();
+		boolean allStale = false;
+
+		// Started early, the versions dropped are younger than the max lag
+		// until the generation would have been started.
+		if (now - generations.rotateAt() < 0) {
+			if (now - droppedUntil < 0) {
+				dropped = new HashSet<>(dropped);
+				dropped.addAll(generations.previous().keySet());
+			} else {
+				dropped = generations.previous().keySet();
+			}
+
+			droppedUntil = generations.rotateAt();
+
+			if (dropped.size() > MAX_WRITTEN_VERSIONS) {
+				dropped = Set.of();
+				allStale = true;
+			}
+		}
+
+		final var rotated = new Generations(new ConcurrentHashMap<>(), generations.current(), now + this.maxLagNanos, dropped, droppedUntil);
+
+		if (!this.generations.compareAndSet(generations, rotated)) {
+			return this.generations.get();
+		}
+
+		if (allStale) {
+			this.staleUntil = droppedUntil;
+		}
+
+		return rotated;
+	}
+
+	private static boolean isOlder(final Account account, final Map<Long, Long> writtenVersions) {
+		final var written = writtenVersions.get(account.id());
+		return written != null && account.version() < written;
+	}
+
+	/**
+	 * @param current the versions written since the generation started.
+	 * @param previous the versions written in the generation before.
+	 * @param rotateAt the time to start the next generation, in nanos.
+	 * @param dropped the accounts of the versions dropped early.
+	 * @param droppedUntil the time the dropped versions would have been
+	 * dropped, in nanos.
+	 */
+	private record Generations(
+		Map<Long, Long> current,
+		Map<Long, Long> previous,
+		long rotateAt,
+		Set<Long> dropped,
+		long droppedUntil
+	) {
+	}
+
+}
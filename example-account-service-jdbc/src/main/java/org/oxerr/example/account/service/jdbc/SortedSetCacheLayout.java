@@ -0,0 +1,104 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.List;
+import java.util.Set;
+
+import org.oxerr.example.account.Account;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * One sorted set per account, of the encoded accounts scored by version.
+ *
+ * <p>Costs the most memory per account, a sorted set key and its member, but
+ * needs no version in the value.</p>
+ */
+public class SortedSetCacheLayout implements CacheLayout {
+
+	private static final byte[] POSITIVE_INFINITY = SafeEncoder.encode("+inf");
+
+	private static final byte[] NEGATIVE_INFINITY = SafeEncoder.encode("-inf");
+
+	private static final String DEFAULT_KEY_PREFIX = "account:";
+
+	/**
+	 * Adds the member unless it exists, removes the members of older versions,
+	 * and refreshes the expiration, atomically in one round trip.
+	 */
+	private static final String CACHE_SCRIPT = String.join("\n",
+		"redis.call('ZADD', KEYS[1], 'NX', ARGV[1], ARGV[2])",
+		"redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, '(' .. ARGV[1])",
+		"return redis.call('EXPIRE', KEYS[1], ARGV[3])"
+	);
+
+	private final RedisScript cacheScript = new RedisScript(CACHE_SCRIPT);
+
+	private final String keyPrefix;
+
+	public SortedSetCacheLayout() {
+		this(DEFAULT_KEY_PREFIX);
+	}
+
+	/**
+	 * @param keyPrefix the prefix of the keys, followed by the ID.
+	 */
+	public SortedSetCacheLayout(final String keyPrefix) {
+		this.keyPrefix = keyPrefix;
+	}
+
+	@Override
+	public String getKeyPrefix() {
+		return this.keyPrefix;
+	}
+
+	@Override
+	public byte[] getKey(final long id) {
+		return SafeEncoder.encode(this.keyPrefix + id);
+	}
+
+	@Override
+	public Object get(final Jedis jedis, final long id) {
+		return jedis.zrevrangeByScore(this.getKey(id), POSITIVE_INFINITY, NEGATIVE_INFINITY, 0, 1);
+	}
+
+	@Override
+	public Object get(final JedisCluster jedisCluster, final long id) {
+		return jedisCluster.zrevrangeByScore(this.getKey(id), POSITIVE_INFINITY, NEGATIVE_INFINITY, 0, 1);
+	}
+
+	@Override
+	public Response<?> get(final Pipeline pipeline, final long id) {
+		return pipeline.zrevrangeByScore(this.getKey(id), POSITIVE_INFINITY, NEGATIVE_INFINITY, 0, 1);
+	}
+
+	@Override
+	public byte[] getValue(final Object reply) {
+		final var members = (Set<?>) reply;
+		return members.isEmpty() ? null : (byte[]) members.iterator().next();
+	}
+
+	@Override
+	public RedisScript getCacheScript() {
+		return this.cacheScript;
+	}
+
+	@Override
+	public List<byte[]> getCacheKeys(final Account account) {
+		return List.of(this.getKey(account.id()));
+	}
+
+	@Override
+	public List<byte[]> getCacheArgs(final Account account, final byte[] value, final long expirationSeconds) {
+		return List.of(
+			Protocol.toByteArray(account.version()),
+			value,
+			Protocol.toByteArray(expirationSeconds)
+		);
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.List;
+
+import org.oxerr.example.account.Account;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * One string per account, of the version and the encoded account, replaced
+ * by a compare-and-set script.
+ */
+public class StringCacheLayout implements CacheLayout {
+
+	private static final String DEFAULT_KEY_PREFIX = "account:v:";
+
+	/**
+	 * Sets the value unless the cached version is the same or newer, and
+	 * refreshes the expiration, atomically in one round trip.
+	 */
+	private static final String CACHE_SCRIPT = String.join("\n",
+		"local current = redis.call('GET', KEYS[1])",
+		"if not current or tonumber(string.match(current, '^%d+')) < tonumber(ARGV[1]) then",
+		"	redis.call('SET', KEYS[1], ARGV[1] .. ':' .. ARGV[2])",
+		"end",
+		"return redis.call('EXPIRE', KEYS[1], ARGV[3])"
+	);
+
+	private final RedisScript cacheScript = new RedisScript(CACHE_SCRIPT);
+
+	private final String keyPrefix;
+
+	public StringCacheLayout() {
+		this(DEFAULT_KEY_PREFIX);
+	}
+
+	/**
+	 * @param keyPrefix the prefix of the keys, followed by the ID.
+	 */
+	public StringCacheLayout(final String keyPrefix) {
+		this.keyPrefix = keyPrefix;
+	}
+
+	@Override
+	public String getKeyPrefix() {
+		return this.keyPrefix;
+	}
+
+	@Override
+	public byte[] getKey(final long id) {
+		return SafeEncoder.encode(this.keyPrefix + id);
+	}
+
+	@Override
+	public Object get(final Jedis jedis, final long id) {
+		return jedis.get(this.getKey(id));
+	}
+
+	@Override
+	public Object get(final JedisCluster jedisCluster, final long id) {
+		return jedisCluster.get(this.getKey(id));
+	}
+
+	@Override
+	public Response<?> get(final Pipeline pipeline, final long id) {
+		return pipeline.get(this.getKey(id));
+	}
+
+	@Override
+	public byte[] getValue(final Object reply) {
+		return VersionedValues.getValue((byte[]) reply);
+	}
+
+	@Override
+	public RedisScript getCacheScript() {
+		return this.cacheScript;
+	}
+
+	@Override
+	public List<byte[]> getCacheKeys(final Account account) {
+		return List.of(this.getKey(account.id()));
+	}
+
+	@Override
+	public List<byte[]> getCacheArgs(final Account account, final byte[] value, final long expirationSeconds) {
+		return List.of(
+			Protocol.toByteArray(account.version()),
+			value,
+			Protocol.toByteArray(expirationSeconds)
+		);
+	}
+
+}
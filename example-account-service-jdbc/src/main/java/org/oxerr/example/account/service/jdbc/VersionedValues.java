@@ -0,0 +1,32 @@
+package org.oxerr.example.account.service.jdbc;
+
+import java.util.Arrays;
+
+/**
+ * The values of the versioned layouts, the decimal version and a colon
+ * followed by the encoded account, so the cache scripts can compare the
+ * versions without decoding the accounts.
+ */
+final class VersionedValues {
+
+	private VersionedValues() {
+	}
+
+	/**
+	 * Returns the encoded account in the versioned value, or null if null.
+	 */
+	static byte[] getValue(final byte[] versionedValue) {
+		if (versionedValue == null) {
+			return null;
+		}
+
+		for (int i = 0; i < versionedValue.length; i++) {
+			if (versionedValue[i] == ':') {
+				return Arrays.copyOfRange(versionedValue, i + 1, versionedValue.length);
+			}
+		}
+
+		throw new IllegalArgumentException("No version in value.");
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.oxerr.example.account.service.jdbc;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.oxerr.example.account.Account;
+
+/**
+ * With a max lag long enough that no generation is started by time.
+ */
+class ReplicasTest {
+
+	private static final int WRITES = 120_000;
+
+	private Replicas replicas;
+
+	@BeforeEach
+	void setUp() {
+		final var dataSource = (DataSource) Proxy.newProxyInstance(
+			DataSource.class.getClassLoader(),
+			new Class<?>[] { DataSource.class },
+			(proxy, method, args) -> {
+				throw new UnsupportedOperationException(method.getName());
+			}
+		);
+		this.replicas = new Replicas(List.of(dataSource), Duration.ofHours(1));
+	}
+
+	@Test
+	void testStale() {
+		this.replicas.written(new Account(1L, 0, 2));
+
+		assertTrue(this.replicas.isStale(new Account(1L, 0, 1)));
+		assertFalse(this.replicas.isStale(new Account(1L, 0, 2)));
+		assertFalse(this.replicas.isStale(new Account(2L, 0, 0)));
+	}
+
+	@Test
+	void testDroppedEarly() {
+		for (long id = 1; id <= WRITES; id++) {
+			this.replicas.written(new Account(id, 0, 1));
+		}
+
+		// Dropped early, whatever the version read.
+		assertTrue(this.replicas.isStale(new Account(1L, 0, 1)));
+
+		// Still kept.
+		assertTrue(this.replicas.isStale(new Account(WRITES, 0, 0)));
+		assertFalse(this.replicas.isStale(new Account(WRITES, 0, 1)));
+
+		// Never written.
+		assertFalse(this.replicas.isStale(new Account(WRITES + 1L, 0, 0)));
+	}
+
+}
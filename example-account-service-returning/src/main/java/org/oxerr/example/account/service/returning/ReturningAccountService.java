@@ -0,0 +1,380 @@
+package org.oxerr.example.account.service.returning;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Adds the amount and reads back the account in one round trip, without
+ * reading it first, so there is neither a retry loop nor a row lock held
+ * across round trips.
+ *
+ * <p>On PostgreSQL the update returns the account with {@code returning}. On
+ * H2 the update is selected from its {@code final table}. On MySQL, which has
+ * no {@code returning} on update, the row is selected after the update in the
+ * same multi-statement call, between a {@code start transaction} and a
+ * {@code commit} in the same call, so it is read as locked by the update
+ * without the round trips of switching the auto-commit off and on. The data
+ * source of this service on MySQL should have {@code allowMultiQueries=true},
+ * which is better not turned on for the others.</p>
+ */
+public class ReturningAccountService extends AbstractJDBCAccountService {
+
+	private final Logger log = LogManager.getLogger(ReturningAccountService.class);
+
+	private volatile Dialect dialect;
+
+	public ReturningAccountService(
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		super(dataSource, jedisPool, jedisCluster);
+	}
+
+	@Override
+	protected Account addAmountViaJDBC(final long id, final long amount) {
+		try (final var conn = this.dataSource.getConnection()) {
+			final var dialect = this.getDialect(conn);
+
+			try (final var update = conn.prepareStatement(dialect.updateSql)) {
+				return this.updateAvailable(update, dialect, id, amount);
+			} catch (SQLException | RuntimeException e) {
+				this.rollbackStatementTransaction(conn, dialect);
+				throw e;
+			}
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The floor is checked by the condition of the update, which returns
+	 * the account whether or not it was updated, in the same round trip, so a
+	 * rejection is told without reading the account again, except on H2.</p>
+	 */
+	@Override
+	protected Account withdrawViaJDBC(final long id, final long amount, final long floor) {
+		try (final var conn = this.dataSource.getConnection()) {
+			final var dialect = this.getDialect(conn);
+			final Optional<Withdrawal> withdrawal;
+
+			try (final var withdraw = conn.prepareStatement(dialect.withdrawSql)) {
+				withdraw.setLong(1, amount);
+				withdraw.setLong(2, id);
+				withdraw.setLong(3, amount);
+				withdraw.setLong(4, floor);
+
+				if (dialect.returnsRejected()) {
+					withdraw.setLong(5, id);
+				}
+
+				withdrawal = this.executeWithdraw(withdraw, id);
+			} catch (SQLException | RuntimeException e) {
+				this.rollbackStatementTransaction(conn, dialect);
+				throw e;
+			}
+
+			if (withdrawal.isPresent() && withdrawal.get().applied()) {
+				return withdrawal.get().account();
+			}
+
+			final var account = dialect.returnsRejected()
+				? withdrawal.orElseThrow(() -> new IllegalArgumentException(String.format("No such account with ID %d.", id))).account()
+				: this.getViaJDBC(conn, id);
+
+			throw new InsufficientAvailableException(account, amount, floor);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected List<Account> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts) {
+		try (final var conn = this.dataSource.getConnection()) {
+			return this.inTransaction(conn, c -> this.applyPostingsViaJDBC(c, amounts));
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	private List<Account> applyPostingsViaJDBC(final Connection conn, final SortedMap<Long, Long> amounts) throws SQLException {
+		final List<Account> accounts = new ArrayList<>(amounts.size());
+
+		final var dialect = this.getDialect(conn);
+
+		try (final var update = conn.prepareStatement(dialect.postingSql)) {
+			// Lock the rows in ascending ID order.
+			for (final var entry : amounts.entrySet()) {
+				accounts.add(this.updateAvailable(update, dialect, entry.getKey(), entry.getValue()));
+			}
+		}
+
+		return accounts;
+	}
+
+	private Account updateAvailable(
+		final PreparedStatement update,
+		final Dialect dialect,
+		final long id,
+		final long amount
+	) throws SQLException {
+		update.setLong(1, amount);
+		update.setLong(2, id);
+
+		if (dialect.selectsBack()) {
+			update.setLong(3, id);
+		}
+
+		return this.executeUpdate(update, id)
+			.orElseThrow(() -> new IllegalArgumentException(String.format("No such account with ID %d.", id)));
+	}
+
+	/**
+	 * Executes the update of the dialect, and returns the row selected, the
+	 * update counts before it, such as of the start of the transaction, are
+	 * skipped.
+	 *
+	 * @return the account after updated, or empty if there is no such account.
+	 */
+	private Optional<Account> executeUpdate(final PreparedStatement update, final long id) throws SQLException {
+		var hasResultSet = update.execute();
+		while (!hasResultSet) {
+			if (update.getUpdateCount() == -1) {
+				return Optional.empty();
+			}
+			hasResultSet = update.getMoreResults();
+		}
+
+		try (final var rs = update.getResultSet()) {
+			if (rs.next()) {
+				final var account = new Account(id, rs.getLong(1), rs.getLong(2));
+				log.trace("updated {}@{}.", id, account.version());
+				return Optional.of(account);
+			} else {
+				return Optional.empty();
+			}
+		}
+	}
+
+	/**
+	 * Executes the withdrawal of the dialect, and returns the row selected,
+	 * the update counts before it are skipped.
+	 *
+	 * @return the account and whether it was updated, or empty if no row was
+	 * returned.
+	 */
+	private Optional<Withdrawal> executeWithdraw(final PreparedStatement withdraw, final long id) throws SQLException {
+		var hasResultSet = withdraw.execute();
+		while (!hasResultSet) {
+			if (withdraw.getUpdateCount() == -1) {
+				return Optional.empty();
+			}
+			hasResultSet = withdraw.getMoreResults();
+		}
+
+		try (final var rs = withdraw.getResultSet()) {
+			if (rs.next()) {
+				final var withdrawal = new Withdrawal(new Account(id, rs.getLong(1), rs.getLong(2)), rs.getBoolean(3));
+				log.trace("withdrew {}@{}: {}.", id, withdrawal.account().version(), withdrawal.applied());
+				return Optional.of(withdrawal);
+			} else {
+				return Optional.empty();
+			}
+		}
+	}
+
+	private Account getViaJDBC(final Connection conn, final long id) throws SQLException {
+		try (final var select = conn.prepareStatement(this.selectSql)) {
+			select.setLong(1, id);
+
+			try (final var rs = select.executeQuery()) {
+				if (rs.next()) {
+					return new Account(id, rs.getLong("available"), rs.getLong("version"));
+				} else {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rolls back the transaction the statement of the dialect started, which
+	 * is left open if a statement before its commit failed.
+	 */
+	private void rollbackStatementTransaction(final Connection conn, final Dialect dialect) {
+		if (dialect.startsTransaction()) {
+			try (final var rollback = conn.createStatement()) {
+				rollback.execute("rollback");
+			} catch (SQLException e) {
+				log.warn("Rollback failed: {}", e.getMessage());
+			}
+		}
+	}
+
+	private Dialect getDialect(final Connection conn) throws SQLException {
+		var current = this.dialect;
+
+		if (current == null) {
+			current = Dialect.of(conn.getMetaData().getDatabaseProductName());
+			this.dialect = current;
+		}
+
+		return current;
+	}
+
+	/**
+	 * @param account the account after the withdrawal, or as it is if
+	 * rejected.
+	 * @param applied true if the account was updated.
+	 */
+	private record Withdrawal(Account account, boolean applied) {
+	}
+
+	private enum Dialect {
+
+		/**
+		 * The rejected withdrawal selects the account in the same statement,
+		 * read from the snapshot of the statement.
+		 */
+		POSTGRESQL(
+			"update account set available = available + ?, version = version + 1 where id = ? returning available, version",
+			"with updated as ("
+				+ "update account set available = available + ?, version = version + 1 where id = ? and available + ? >= ?"
+				+ " returning available, version)"
+				+ " select available, version, true from updated"
+				+ " union all"
+				+ " select available, version, false from account where id = ? and not exists (select 1 from updated)",
+			null,
+			true
+		),
+
+		/**
+		 * The number of rows the withdrawal updated is selected with the
+		 * account by {@code row_count()}.
+		 */
+		MYSQL(
+			"update account set available = available + ?, version = version + 1 where id = ?",
+			"update account set available = available + ?, version = version + 1 where id = ? and available + ? >= ?;"
+				+ " select available, version, row_count() from account where id = ?",
+			"select available, version from account where id = ?",
+			true
+		),
+
+		/**
+		 * Only the updated row can be selected from the final table, the
+		 * rejected withdrawal reads the account again.
+		 */
+		H2(
+			"select available, version from final table (update account set available = available + ?, version = version + 1 where id = ?)",
+			"select available, version, true from final table (update account set available = available + ?, version = version + 1"
+				+ " where id = ? and available + ? >= ?)",
+			null,
+			false
+		);
+
+		/**
+		 * The update of the amount and the ID, in a transaction of its own,
+		 * in one round trip.
+		 */
+		private final String updateSql;
+
+		/**
+		 * The update of the amount and the ID, in the transaction of the
+		 * connection.
+		 */
+		private final String postingSql;
+
+		/**
+		 * The update of the amount, the ID, the amount again and the floor,
+		 * and the ID again if the rejected are returned, which updates no row
+		 * if the available would fall below the floor, in a transaction of
+		 * its own, in one round trip. It returns the available, the version
+		 * and whether updated.
+		 */
+		private final String withdrawSql;
+
+		private final boolean selectsBack;
+
+		private final boolean returnsRejected;
+
+		/**
+		 * @param withdrawSql the withdrawal, without the transaction.
+		 * @param selectBackSql the select of the ID, appended to the updates
+		 * which can not return the row, or null.
+		 * @param returnsRejected true if the withdrawal returns the account
+		 * when it is rejected too.
+		 */
+		Dialect(
+			final String updateSql,
+			final String withdrawSql,
+			final String selectBackSql,
+			final boolean returnsRejected
+		) {
+			this.selectsBack = selectBackSql != null;
+			this.returnsRejected = returnsRejected;
+			this.postingSql = this.selectsBack ? updateSql + "; " + selectBackSql : updateSql;
+			this.updateSql = this.selectsBack ? "start transaction; " + this.postingSql + "; commit" : updateSql;
+			this.withdrawSql = this.selectsBack ? "start transaction; " + withdrawSql + "; commit" : withdrawSql;
+		}
+
+		/**
+		 * Returns true if the row is selected after the update, which takes
+		 * the ID as the last parameter.
+		 */
+		boolean selectsBack() {
+			return this.selectsBack;
+		}
+
+		/**
+		 * Returns true if the withdrawal returns the account when it is
+		 * rejected too, which takes the ID as the last parameter.
+		 */
+		boolean returnsRejected() {
+			return this.returnsRejected;
+		}
+
+		/**
+		 * Returns true if the updates start and commit their own transaction,
+		 * which is left open if they fail before the commit.
+		 */
+		boolean startsTransaction() {
+			return this.selectsBack;
+		}
+
+		static Dialect of(final String databaseProductName) {
+			final var name = databaseProductName.toLowerCase(Locale.ROOT);
+
+			if (name.contains("postgresql")) {
+				return POSTGRESQL;
+			} else if (name.contains("mysql") || name.contains("mariadb")) {
+				return MYSQL;
+			} else if (name.contains("h2")) {
+				return H2;
+			} else {
+				throw new UnsupportedOperationException("Unsupported database: " + databaseProductName);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Account service implementation updating and reading back the account in
+ * one statement.
+ */
+package org.oxerr.example.account.service.returning;
@@ -0,0 +1,68 @@
+package org.oxerr.example.account.service.versioned;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter, escalating to row locks after a
+ * number of conflicts.
+ *
+ * <p>The backoff before the n-th retry is uniformly distributed between zero
+ * and {@code min(maxBackoff, baseBackoff * 2^(n - 1))}, so the writers of a
+ * hot account spread out instead of retrying in lockstep.</p>
+ */
+public class BackoffContentionPolicy implements ContentionPolicy {
+
+	private final long baseBackoffNanos;
+
+	private final long maxBackoffNanos;
+
+	private final int escalateAfter;
+
+	private final int maxAttempts;
+
+	/**
+	 * @param baseBackoff the max backoff before the first retry.
+	 * @param maxBackoff the cap of the max backoff.
+	 * @param escalateAfter the number of conflicts after which the rows are
+	 * locked, {@link Integer#MAX_VALUE} never to escalate.
+	 * @param maxAttempts the max number of attempts.
+	 */
+	public BackoffContentionPolicy(
+		final Duration baseBackoff,
+		final Duration maxBackoff,
+		final int escalateAfter,
+		final int maxAttempts
+	) {
+		if (escalateAfter < 1 || maxAttempts < 1) {
+			throw new IllegalArgumentException("Escalate after and max attempts should be positive.");
+		}
+
+		this.baseBackoffNanos = baseBackoff.toNanos();
+		this.maxBackoffNanos = maxBackoff.toNanos();
+		this.escalateAfter = escalateAfter;
+		this.maxAttempts = maxAttempts;
+	}
+
+	@Override
+	public int getMaxAttempts() {
+		return this.maxAttempts;
+	}
+
+	@Override
+	public long getBackoffNanos(final int conflicts) {
+		if (this.baseBackoffNanos <= 0) {
+			return 0;
+		}
+
+		final int shift = Math.min(conflicts - 1, Long.numberOfLeadingZeros(this.baseBackoffNanos) - 1);
+		final long ceiling = Math.min(this.maxBackoffNanos, this.baseBackoffNanos << shift);
+		return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	@Override
+	public boolean shouldEscalate(final int conflicts) {
+		return conflicts >= this.escalateAfter;
+	}
+
+}
@@ -0,0 +1,32 @@
+package org.oxerr.example.account.service.versioned;
+
+/**
+ * Decides how {@link VersionedAccountService} retries the optimistic updates
+ * which conflicted with concurrent updates.
+ */
+public interface ContentionPolicy {
+
+	/**
+	 * Returns the max number of attempts, after which
+	 * {@link org.springframework.dao.OptimisticLockingFailureException} is
+	 * thrown.
+	 */
+	int getMaxAttempts();
+
+	/**
+	 * Returns how long to wait before retrying.
+	 *
+	 * @param conflicts the number of conflicts so far, starting at 1.
+	 * @return the nanoseconds to wait, zero to retry immediately.
+	 */
+	long getBackoffNanos(int conflicts);
+
+	/**
+	 * Returns true if the next attempt should lock the rows with
+	 * {@code select ... for update} instead of updating optimistically.
+	 *
+	 * @param conflicts the number of conflicts so far, starting at 1.
+	 */
+	boolean shouldEscalate(int conflicts);
+
+}
@@ -1,13 +1,27 @@
 package org.oxerr.example.account.service.versioned;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.sql.DataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.InsufficientAvailableException;
 import org.oxerr.example.account.service.jdbc.AbstractJDBCAccountService;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.dao.TransientDataAccessResourceException;
@@ -15,14 +29,35 @@ import org.springframework.dao.TransientDataAccessResourceException;
 import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
 
+/**
+ * Updates the accounts optimistically, retrying the updates which conflicted
+ * with concurrent updates as the {@link ContentionPolicy} decides.
+ */
 public class VersionedAccountService extends AbstractJDBCAccountService {
 
-	private static final short DEFAULT_MAX_ATTEMPTS = Short.MAX_VALUE;
+	private static final ContentionPolicy DEFAULT_CONTENTION_POLICY = new BackoffContentionPolicy(
+		Duration.ofNanos(50_000),
+		Duration.ofMillis(5),
+		16,
+		Short.MAX_VALUE
+	);
+
+	private static final long NO_FLOOR = Long.MIN_VALUE;
+
+	private static final int MAX_CONFLICT_ACCOUNTS = 10_000;
 
 	private final Logger log = LogManager.getLogger(VersionedAccountService.class);
 
 	private final String updateSql;
 
+	private final String selectForUpdateSql;
+
+	private final ConcurrentMap<Long, LongAdder> conflicts;
+
+	private final LongAdder escalations;
+
+	private volatile ContentionPolicy contentionPolicy;
+
 	public VersionedAccountService(
 		final DataSource dataSource,
 		final JedisPool jedisPool,
@@ -30,64 +65,370 @@ public class VersionedAccountService extends AbstractJDBCAccountService {
 	) {
 		super(dataSource, jedisPool, jedisCluster);
 		this.updateSql = "update account set available = ?, version = version + 1 where id = ? and version = ?";
+		this.selectForUpdateSql = "select id, available, version from account where id = ? for update";
+		this.conflicts = new ConcurrentHashMap<>();
+		this.escalations = new LongAdder();
+		this.contentionPolicy = DEFAULT_CONTENTION_POLICY;
+	}
+
+	/**
+	 * Sets the policy to retry the conflicted updates, by default an
+	 * exponential backoff with jitter, escalating to row locks after 16
+	 * conflicts.
+	 */
+	public void setContentionPolicy(final ContentionPolicy contentionPolicy) {
+		this.contentionPolicy = contentionPolicy;
+	}
+
+	/**
+	 * Returns the number of conflicts of the account since the last reset.
+	 *
+	 * <p>The counters are kept for up to 10,000 accounts, when full, the
+	 * counters of the less contended half are dropped, so the most contended
+	 * accounts are kept, but their counts may be low.</p>
+	 */
+	public long getConflicts(final long id) {
+		final var counter = this.conflicts.get(id);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Returns the number of conflicts by account ID since the last reset,
+	 * only the accounts which have conflicted are present.
+	 */
+	public Map<Long, Long> getConflicts() {
+		final Map<Long, Long> snapshot = new HashMap<>(this.conflicts.size());
+		this.conflicts.forEach((id, counter) -> snapshot.put(id, counter.sum()));
+		return snapshot;
+	}
+
+	/**
+	 * Returns the number of attempts which locked the rows since the last
+	 * reset.
+	 */
+	public long getEscalations() {
+		return this.escalations.sum();
+	}
+
+	/**
+	 * Resets the conflict counters, so that the accounts which are no longer
+	 * contended do not retain counters.
+	 */
+	public void resetConflicts() {
+		this.conflicts.clear();
+		this.escalations.reset();
 	}
 
 	@Override
 	protected Account addAmountViaJDBC(final long id, final long amount) {
-		final var maxAttempts = DEFAULT_MAX_ATTEMPTS;
+		return this.withdrawViaJDBC(id, amount, NO_FLOOR);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The floor is checked against the row read for the optimistic update,
+	 * so it costs no extra query.</p>
+	 */
+	@Override
+	protected Account withdrawViaJDBC(final long id, final long amount, final long floor) {
+		final var policy = this.contentionPolicy;
+
+		var conflicts = 0;
+
+		while (true) {
+			final var escalated = conflicts > 0 && policy.shouldEscalate(conflicts);
+			if (escalated) {
+				this.escalations.increment();
+			}
+
+			final var account = this.addAmountViaJDBC(id, amount, floor, escalated);
+
+			if (account.isPresent()) {
+				return account.get();
+			}
 
-		var available = 0L;
-		var version = -1L;
+			this.conflict(id);
 
-		var attempts = 0;
+			if (++conflicts >= policy.getMaxAttempts()) {
+				log.warn("Update available failed. {}, attempts: {}.", id, conflicts);
+				throw new OptimisticLockingFailureException("Update available failed.");
+			}
+
+			// Backs off without a connection, so the callers backing off do
+			// not starve the pool.
+			this.recordRetry();
+			this.backoff(policy, conflicts);
+		}
+	}
 
+	/**
+	 * Attempts the update once, on a connection of its own.
+	 *
+	 * @param escalated if true, locks the row before updating it.
+	 */
+	private Optional<Account> addAmountViaJDBC(
+		final long id,
+		final long amount,
+		final long floor,
+		final boolean escalated
+	) {
 		try (
 			final var conn = this.dataSource.getConnection();
-			final var select = conn.prepareStatement(this.selectSql);
 			final var update = conn.prepareStatement(this.updateSql);
 		) {
-			select.setLong(1, id);
+			if (escalated) {
+				return this.addAmountForUpdate(conn, update, id, amount, floor);
+			}
+
+			try (final var select = conn.prepareStatement(this.selectSql)) {
+				return this.addAmount(select, update, id, amount, floor);
+			}
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
 
-			while (true) {
+	/**
+	 * Updates the account if it has not been updated since read.
+	 *
+	 * @return the account after updated, or empty if it has been updated
+	 * concurrently.
+	 * @throws InsufficientAvailableException if the available read would
+	 * fall below the floor.
+	 */
+	private Optional<Account> addAmount(
+		final PreparedStatement select,
+		final PreparedStatement update,
+		final long id,
+		final long amount,
+		final long floor
+	) throws SQLException {
+		final long available;
+		final long version;
 
-				// Read available and version from database.
-				try (final ResultSet rs = select.executeQuery()) {
-					if (rs.next()) {
-						available = rs.getLong("available");
-						version = rs.getLong("version");
-					} else {
-						throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
-					}
-				}
+		// Read available and version from database.
+		select.setLong(1, id);
+
+		try (final ResultSet rs = select.executeQuery()) {
+			if (rs.next()) {
+				available = rs.getLong("available");
+				version = rs.getLong("version");
+			} else {
+				throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+			}
+		}
+
+		if (available + amount < floor) {
+			throw new InsufficientAvailableException(new Account(id, available, version), amount, floor);
+		}
+
+		// Update the available and version.
+		update.setLong(1, available + amount);
+		update.setLong(2, id);
+		update.setLong(3, version);
+
+		final int count = update.executeUpdate();
+		log.trace("updated {}@{}, row count: {}.", id, version + 1, count);
+
+		if (count < 1) {
+			return Optional.empty();
+		}
+
+		// The version should be incremented after updated.
+		return Optional.of(new Account(id, available + amount, version + 1));
+	}
+
+	/**
+	 * Locks the row before updating it, in its own transaction.
+	 */
+	private Optional<Account> addAmountForUpdate(
+		final Connection conn,
+		final PreparedStatement update,
+		final long id,
+		final long amount,
+		final long floor
+	) throws SQLException {
+		try (final var selectForUpdate = conn.prepareStatement(this.selectForUpdateSql)) {
+			return this.inTransaction(conn, c -> this.addAmount(selectForUpdate, update, id, amount, floor));
+		}
+	}
+
+	@Override
+	protected List<Account> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts) {
+		final var policy = this.contentionPolicy;
+
+		var conflicts = 0;
 
-				// Update the available and version.
-				update.setLong(1, available + amount);
-				update.setLong(2, id);
-				update.setLong(3, version);
+		while (true) {
+			// Locked in ascending ID order, like the database lock service.
+			final var escalated = conflicts > 0 && policy.shouldEscalate(conflicts);
+			if (escalated) {
+				this.escalations.increment();
+			}
+
+			final var accounts = this.applyPostingsViaJDBC(amounts, escalated);
+
+			if (accounts.isPresent()) {
+				return accounts.get();
+			}
+
+			amounts.keySet().forEach(this::conflict);
+
+			if (++conflicts >= policy.getMaxAttempts()) {
+				log.warn("Apply postings failed. {}, attempts: {}.", amounts.keySet(), conflicts);
+				throw new OptimisticLockingFailureException("Apply postings failed.");
+			}
 
-				final int count = update.executeUpdate();
-				log.trace("updated {}@{}, row count: {}, attempts: {}.", id, version + 1, count, attempts);
+			this.recordRetry();
+			this.backoff(policy, conflicts);
+		}
+	}
+
+	/**
+	 * Attempts the postings once, in a transaction on a connection of its own,
+	 * rolled back if any account has been updated concurrently.
+	 *
+	 * @param escalated if true, locks the rows before updating them.
+	 */
+	private Optional<List<Account>> applyPostingsViaJDBC(final SortedMap<Long, Long> amounts, final boolean escalated) {
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var select = conn.prepareStatement(escalated ? this.selectForUpdateSql : this.selectSql);
+			final var update = conn.prepareStatement(this.updateSql);
+		) {
+			// Toggled only if on, as by inTransaction, which can not roll
+			// back an empty result.
+			final var autoCommit = conn.getAutoCommit();
 
-				if (count >= 1) {
+			if (autoCommit) {
+				conn.setAutoCommit(false);
+			}
 
-					// The version should be incremented after updated.
-					available = available + amount;
-					version = version + 1;
+			try {
+				final var accounts = this.applyPostings(select, update, amounts);
 
-					break;
+				if (accounts.isPresent()) {
+					conn.commit();
 				} else {
-					if (++attempts >= maxAttempts) {
-						log.warn("Update available failed. {}@{}, attempts: {}.", id, version + 1, attempts);
-						throw new OptimisticLockingFailureException("Update available failed.");
-					}
+					conn.rollback();
+				}
+
+				return accounts;
+			} catch (SQLException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				if (autoCommit) {
+					conn.setAutoCommit(true);
 				}
 			}
 		} catch (SQLException e) {
 			throw new TransientDataAccessResourceException(e.getMessage(), e);
 		}
+	}
+
+	/**
+	 * Updates the accounts in ascending ID order, without committing.
+	 *
+	 * @return the accounts after updated, or empty if any of them has been
+	 * updated concurrently.
+	 */
+	private Optional<List<Account>> applyPostings(
+		final PreparedStatement select,
+		final PreparedStatement update,
+		final SortedMap<Long, Long> amounts
+	) throws SQLException {
+		final List<Account> accounts = new ArrayList<>(amounts.size());
+
+		for (final var entry : amounts.entrySet()) {
+			final long id = entry.getKey();
+			final long available;
+			final long version;
+
+			select.setLong(1, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				if (rs.next()) {
+					available = rs.getLong("available");
+					version = rs.getLong("version");
+				} else {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+			}
+
+			update.setLong(1, available + entry.getValue());
+			update.setLong(2, id);
+			update.setLong(3, version);
+
+			final int count = update.executeUpdate();
+			log.trace("updated {}@{}, row count: {}.", id, version + 1, count);
+
+			if (count < 1) {
+				return Optional.empty();
+			}
+
+			accounts.add(new Account(id, available + entry.getValue(), version + 1));
+		}
 
-		return new Account(id, available, version);
+		return Optional.of(accounts);
 	}
 
-}
+	private void conflict(final long id) {
+		var counter = this.conflicts.get(id);
+
+		if (counter == null) {
+			if (this.conflicts.size() >= MAX_CONFLICT_ACCOUNTS) {
+				this.evictConflicts();
+			}
+
+			counter = this.conflicts.computeIfAbsent(id, k -> new LongAdder());
+		}
+
+		counter.increment();
+	}
+
+	/**
+	 * Drops the counters of the less contended half of the accounts, once per
+	 * half of the max accounts newly conflicted.
+	 */
+	private void evictConflicts() {
+		synchronized (this.conflicts) {
+			if (this.conflicts.size() < MAX_CONFLICT_ACCOUNTS) {
+				return;
+			}
+
+			final long median = this.conflicts.values().stream()
+				.mapToLong(LongAdder::sum)
+				.sorted()
+				.skip(this.conflicts.size() / 2)
+				.findFirst()
+				.orElse(0);
 
+			this.conflicts.values().removeIf(counter -> counter.sum() < median);
+
+			// Then the ones at the median, till half is left.
+			final var it = this.conflicts.values().iterator();
+			while (this.conflicts.size() > MAX_CONFLICT_ACCOUNTS / 2 && it.hasNext()) {
+				if (it.next().sum() <= median) {
+					it.remove();
+				}
+			}
+
+			log.debug("Conflict counters evicted, {} kept.", this.conflicts::size);
+		}
+	}
+
+	private void backoff(final ContentionPolicy policy, final int conflicts) {
+		final long nanos = policy.getBackoffNanos(conflicts);
+
+		if (nanos > 0) {
+			LockSupport.parkNanos(nanos);
+
+			if (Thread.currentThread().isInterrupted()) {
+				throw new OptimisticLockingFailureException("Interrupted while backing off.");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,612 @@
+package org.oxerr.example.account.service.write.behind;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.oxerr.example.account.Account;
+import org.oxerr.example.account.service.AccountService;
+import org.oxerr.example.account.service.InsufficientAvailableException;
+import org.oxerr.example.account.service.jdbc.RedisScript;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+/**
+ * Applies the amounts in Redis, and persists them to the database
+ * asynchronously.
+ *
+ * <p>Each account is a Redis hash of its available and version, seeded from
+ * the database on first use. Each amount is applied to the hash and appended
+ * to a journal list by one script, then acknowledged. A background flusher
+ * applies the journals to the database in batches and trims them.</p>
+ *
+ * <p>The flusher only applies the journal entries newer than the version in
+ * the database, under row locks, so a journal replayed after a crash, or
+ * flushed by several processes, is applied exactly once. The journal is as
+ * durable as Redis persistence is configured to be.</p>
+ *
+ * <p>The accounts are spread over several journals by their IDs, each
+ * journal and its accounts share a hash tag, so in cluster mode they are
+ * served by the node of its slot, and the journals by several nodes.</p>
+ *
+ * <p>An account seeded again, such as after its hash was evicted, takes the
+ * amounts and the latest version of its entries still in the journal on top
+ * of the database, so its versions go on from the ones not yet flushed. The
+ * seed is retried if the journal was trimmed since the database was read, as
+ * the entries trimmed may be missing from both.</p>
+ *
+ * <p>The accounts in this mode should not be written by any other service.</p>
+ */
+public class WriteBehindAccountService implements AccountService, AutoCloseable {
+
+	private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+	private static final int DEFAULT_BATCH_SIZE = 1_000;
+
+	private static final long DEFAULT_MAX_PENDING = 100_000;
+
+	private static final int DEFAULT_JOURNALS = 16;
+
+	private static final int MAX_SEED_ATTEMPTS = 5;
+
+	private static final long NO_FLOOR = Long.MIN_VALUE;
+
+	/**
+	 * Returns nil if the account has not been seeded, an error if the journal
+	 * is full, otherwise whether applied, 1 or 0 if the available would fall
+	 * below the floor, then the available and version after.
+	 */
+	private static final String ADD_AMOUNT_SCRIPT = String.join("\n",
+		"if redis.call('EXISTS', KEYS[1]) == 0 then return false end",
+		"if redis.call('LLEN', KEYS[2]) >= tonumber(ARGV[4]) then return redis.error_reply('Write-behind journal is full.') end",
+		"if ARGV[5] then",
+		"  local current = redis.call('HMGET', KEYS[1], 'available', 'version')",
+		"  if tonumber(current[1]) + tonumber(ARGV[2]) < tonumber(ARGV[5]) then",
+		"    return {0, tonumber(current[1]), tonumber(current[2])}",
+		"  end",
+		"end",
+		"local available = redis.call('HINCRBY', KEYS[1], 'available', ARGV[2])",
+		"local version = redis.call('HINCRBY', KEYS[1], 'version', 1)",
+		"redis.call('RPUSH', KEYS[2], ARGV[1] .. ':' .. ARGV[2] .. ':' .. version .. ':' .. ARGV[3])",
+		"return {1, available, version}"
+	);
+
+	/**
+	 * Seeds the account from the database, and the entries of it in the
+	 * journal newer than the database, which are in the order of the
+	 * versions. Returns nil if the journal has been trimmed since the number
+	 * of trims was read, otherwise the available and version.
+	 */
+	private static final String SEED_SCRIPT = String.join("\n",
+		"if redis.call('EXISTS', KEYS[1]) == 0 then",
+		"  if (redis.call('GET', KEYS[3]) or '0') ~= ARGV[4] then return false end",
+		"  redis.call('HSET', KEYS[1], 'available', ARGV[1], 'version', ARGV[2])",
+		"  local version = tonumber(ARGV[2])",
+		"  for _, line in ipairs(redis.call('LRANGE', KEYS[2], 0, -1)) do",
+		"    local id, amount, entryVersion = string.match(line, '^([^:]+):([^:]+):([^:]+):')",
+		"    if id == ARGV[3] and tonumber(entryVersion) > version then",
+		"      redis.call('HINCRBY', KEYS[1], 'available', amount)",
+		"      redis.call('HSET', KEYS[1], 'version', entryVersion)",
+		"      version = tonumber(entryVersion)",
+		"    end",
+		"  end",
+		"end",
+		"return redis.call('HMGET', KEYS[1], 'available', 'version')"
+	);
+
+	/**
+	 * Trims the flushed entries and counts the trim, unless another flusher
+	 * has trimmed them.
+	 */
+	private static final String TRIM_SCRIPT = String.join("\n",
+		"if redis.call('LINDEX', KEYS[1], 0) == ARGV[1] then",
+		"  redis.call('LTRIM', KEYS[1], ARGV[2], -1)",
+		"  redis.call('INCR', KEYS[2])",
+		"  return 1",
+		"end",
+		"return 0"
+	);
+
+	private final Logger log = LogManager.getLogger(WriteBehindAccountService.class);
+
+	private final DataSource dataSource;
+
+	private final JedisPool jedisPool;
+
+	private final JedisCluster jedisCluster;
+
+	private final String selectSql;
+
+	private final String updateSql;
+
+	private final int batchSize;
+
+	private final int journals;
+
+	private final long maxPendingPerJournal;
+
+	private final RedisScript addAmountScript;
+
+	private final RedisScript seedScript;
+
+	private final RedisScript trimScript;
+
+	private final ScheduledExecutorService flusher;
+
+	private volatile boolean closed;
+
+	public WriteBehindAccountService(
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster
+	) {
+		this(
+			dataSource,
+			jedisPool,
+			jedisCluster,
+			DEFAULT_FLUSH_INTERVAL,
+			DEFAULT_BATCH_SIZE,
+			DEFAULT_MAX_PENDING,
+			DEFAULT_JOURNALS
+		);
+	}
+
+	/**
+	 * @param flushInterval the delay between flushes.
+	 * @param batchSize the max number of journal entries per transaction.
+	 * @param maxPending the max number of journal entries not yet flushed,
+	 * bounding the amount at risk and the lag behind Redis, split evenly
+	 * among the journals.
+	 * @param journals the number of journals, each with its own hash tag.
+	 */
+	public WriteBehindAccountService(
+		final DataSource dataSource,
+		final JedisPool jedisPool,
+		final JedisCluster jedisCluster,
+		final Duration flushInterval,
+		final int batchSize,
+		final long maxPending,
+		final int journals
+	) {
+		if (journals < 1) {
+			throw new IllegalArgumentException("Journals should be positive.");
+		}
+
+		this.dataSource = dataSource;
+		this.jedisPool = jedisPool;
+		this.jedisCluster = jedisCluster;
+		this.selectSql = "select id, available, version from account where id = ?";
+		this.updateSql = "update account set available = available + ?, version = ? where id = ?";
+		this.batchSize = batchSize;
+		this.journals = journals;
+		this.maxPendingPerJournal = Math.max(1, (maxPending + journals - 1) / journals);
+		this.addAmountScript = new RedisScript(ADD_AMOUNT_SCRIPT);
+		this.seedScript = new RedisScript(SEED_SCRIPT);
+		this.trimScript = new RedisScript(TRIM_SCRIPT);
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			final var thread = new Thread(r, "account-write-behind-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// Replays what was left in the journal by a previous run first.
+		final long interval = flushInterval.toNanos();
+		this.flusher.scheduleWithFixedDelay(this::flushAll, 0, interval, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Account get(final long id) {
+		log.trace("Getting {}", id);
+
+		final var values = this.hmget(id);
+
+		if (values.get(0) == null) {
+			return this.seed(id);
+		}
+
+		return this.toAccount(id, values);
+	}
+
+	@Override
+	public Account addAmount(final long id, final long amount) {
+		return this.withdraw(id, amount, NO_FLOOR);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The floor is checked against the hash by the same script which
+	 * applies the amount, so it is as atomic as an add.</p>
+	 */
+	@Override
+	public Account withdraw(final long id, final long amount, final long floor) {
+		if (this.closed) {
+			throw new IllegalStateException("Service is closed.");
+		}
+
+		final var keys = List.of(this.getKey(id), this.getJournalKey(this.getJournal(id)));
+		final List<byte[]> args = new ArrayList<>(5);
+		args.add(Protocol.toByteArray(id));
+		args.add(Protocol.toByteArray(amount));
+		args.add(Protocol.toByteArray(System.currentTimeMillis()));
+		args.add(Protocol.toByteArray(this.maxPendingPerJournal));
+
+		if (floor != NO_FLOOR) {
+			args.add(Protocol.toByteArray(floor));
+		}
+
+		final var values = this.evalSeeded(id, keys, args);
+		final var account = new Account(id, (Long) values.get(1), (Long) values.get(2));
+
+		if ((Long) values.get(0) == 0) {
+			throw new InsufficientAvailableException(account, amount, floor);
+		}
+
+		return account;
+	}
+
+	/**
+	 * Returns the number of journal entries not yet flushed.
+	 */
+	public long getPending() {
+		long pending = 0;
+
+		for (int journal = 0; journal < this.journals; journal++) {
+			final var key = this.getJournalKey(journal);
+
+			if (this.jedisPool != null) {
+				try (final var jedis = this.jedisPool.getResource()) {
+					pending += jedis.llen(key);
+				}
+			} else {
+				pending += this.jedisCluster.llen(key);
+			}
+		}
+
+		return pending;
+	}
+
+	/**
+	 * Returns the age of the oldest journal entry not yet flushed.
+	 */
+	public Duration getLag() {
+		long oldest = Long.MAX_VALUE;
+
+		for (int journal = 0; journal < this.journals; journal++) {
+			final var key = this.getJournalKey(journal);
+			final byte[] head;
+
+			if (this.jedisPool != null) {
+				try (final var jedis = this.jedisPool.getResource()) {
+					head = jedis.lindex(key, 0);
+				}
+			} else {
+				head = this.jedisCluster.lindex(key, 0);
+			}
+
+			if (head != null) {
+				oldest = Math.min(oldest, JournalEntry.parse(SafeEncoder.encode(head)).millis());
+			}
+		}
+
+		if (oldest == Long.MAX_VALUE) {
+			return Duration.ZERO;
+		}
+
+		return Duration.ofMillis(Math.max(0, System.currentTimeMillis() - oldest));
+	}
+
+	/**
+	 * Rejects the amounts, and stops the flusher after flushing the journal.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		this.flusher.shutdown();
+
+		try {
+			if (this.flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+				this.flushAll();
+			} else {
+				log.warn("Flusher did not stop in time, {} journal entries pending.", this.getPending());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flushAll() {
+		for (int journal = 0; journal < this.journals; journal++) {
+			try {
+				while (this.flush(journal) >= this.batchSize) {
+					log.trace("Flushed a full batch of journal {}, continuing.", journal);
+				}
+			} catch (RuntimeException e) {
+				// Keep the scheduled flusher alive, the journal is retried next time.
+				log.warn("Flush of journal {} failed: {}", journal, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Flushes a batch of entries of the journal.
+	 *
+	 * @return the number of journal entries flushed.
+	 */
+	private int flush(final int journal) {
+		final var key = this.getJournalKey(journal);
+		final List<byte[]> lines;
+
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				lines = jedis.lrange(key, 0, this.batchSize - 1L);
+			}
+		} else {
+			lines = this.jedisCluster.lrange(key, 0, this.batchSize - 1L);
+		}
+
+		if (lines.isEmpty()) {
+			return 0;
+		}
+
+		final SortedMap<Long, List<JournalEntry>> entries = new TreeMap<>();
+		lines.stream()
+			.map(line -> JournalEntry.parse(SafeEncoder.encode(line)))
+			.forEach(e -> entries.computeIfAbsent(e.id(), id -> new ArrayList<>()).add(e));
+
+		try {
+			this.flushViaJDBC(entries);
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+
+		this.eval(
+			this.trimScript,
+			List.of(key, this.getTrimsKey(journal)),
+			List.of(lines.get(0), Protocol.toByteArray(lines.size()))
+		);
+
+		log.trace("Flushed {} journal entries.", lines::size);
+		return lines.size();
+	}
+
+	private void flushViaJDBC(final SortedMap<Long, List<JournalEntry>> entries) throws SQLException {
+		try (final var conn = this.dataSource.getConnection()) {
+			final var autoCommit = conn.getAutoCommit();
+
+			if (autoCommit) {
+				conn.setAutoCommit(false);
+			}
+
+			try {
+				this.flushViaJDBC(conn, entries);
+			} finally {
+				if (autoCommit) {
+					conn.setAutoCommit(true);
+				}
+			}
+		}
+	}
+
+	private void flushViaJDBC(final Connection conn, final SortedMap<Long, List<JournalEntry>> entries) throws SQLException {
+		final var selectForUpdateSql = String.format(
+			"select id, version from account where id in (%s) order by id for update",
+			String.join(", ", Collections.nCopies(entries.size(), "?"))
+		);
+
+		try (
+			final var selectForUpdate = conn.prepareStatement(selectForUpdateSql);
+			final var update = conn.prepareStatement(this.updateSql);
+		) {
+			var index = 1;
+			for (final long id : entries.keySet()) {
+				selectForUpdate.setLong(index++, id);
+			}
+
+			final Map<Long, Long> versions = new HashMap<>(entries.size());
+			try (final ResultSet rs = selectForUpdate.executeQuery()) {
+				while (rs.next()) {
+					versions.put(rs.getLong("id"), rs.getLong("version"));
+				}
+			}
+
+			for (final var entry : entries.entrySet()) {
+				final long id = entry.getKey();
+				final var version = versions.get(id);
+
+				if (version == null) {
+					log.warn("No such account with ID {}, skipping its journal entries.", id);
+					continue;
+				}
+
+				// Skip the entries which have been flushed.
+				final var pending = entry.getValue().stream().filter(e -> e.version() > version).toList();
+				if (pending.isEmpty()) {
+					continue;
+				}
+
+				update.setLong(1, pending.stream().mapToLong(JournalEntry::amount).sum());
+				update.setLong(2, pending.stream().mapToLong(JournalEntry::version).max().getAsLong());
+				update.setLong(3, id);
+				update.addBatch();
+			}
+
+			update.executeBatch();
+			conn.commit();
+		} catch (SQLException e) {
+			conn.rollback();
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies the amount by the script, seeding the account if its hash is
+	 * missing, again if it is evicted or expired before the script runs.
+	 */
+	private List<?> evalSeeded(final long id, final List<byte[]> keys, final List<byte[]> args) {
+		var result = this.eval(this.addAmountScript, keys, args);
+
+		for (int attempt = 1; result == null && attempt <= MAX_SEED_ATTEMPTS; attempt++) {
+			log.debug("Account {} missing from the cache, seeding.", id);
+			this.seed(id);
+			result = this.eval(this.addAmountScript, keys, args);
+		}
+
+		if (result == null) {
+			throw new IllegalStateException(
+				String.format("Account %d kept being evicted after seeded.", id)
+			);
+		}
+
+		return (List<?>) result;
+	}
+
+	private Account seed(final long id) {
+		final int journal = this.getJournal(id);
+		final var keys = List.of(this.getKey(id), this.getJournalKey(journal), this.getTrimsKey(journal));
+
+		for (int attempt = 1; attempt <= MAX_SEED_ATTEMPTS; attempt++) {
+			// Read before the database, so a trim in between is seen.
+			final var trims = this.getTrims(journal);
+			final var account = this.getViaJDBC(id);
+			final var values = this.eval(
+				this.seedScript,
+				keys,
+				List.of(
+					Protocol.toByteArray(account.available()),
+					Protocol.toByteArray(account.version()),
+					Protocol.toByteArray(id),
+					trims
+				)
+			);
+
+			if (values != null) {
+				return this.toAccount(id, (List<?>) values);
+			}
+
+			log.debug("Journal {} trimmed while seeding {}, retrying.", journal, id);
+		}
+
+		throw new TransientDataAccessResourceException(
+			String.format("Journal %d kept being trimmed while seeding %d.", journal, id)
+		);
+	}
+
+	private byte[] getTrims(final int journal) {
+		final byte[] trims;
+
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				trims = jedis.get(this.getTrimsKey(journal));
+			}
+		} else {
+			trims = this.jedisCluster.get(this.getTrimsKey(journal));
+		}
+
+		return trims != null ? trims : Protocol.toByteArray(0);
+	}
+
+	private Account getViaJDBC(final long id) {
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var select = conn.prepareStatement(this.selectSql);
+		) {
+			select.setLong(1, id);
+
+			try (final ResultSet rs = select.executeQuery()) {
+				if (rs.next()) {
+					return new Account(id, rs.getLong("available"), rs.getLong("version"));
+				} else {
+					throw new IllegalArgumentException(String.format("No such account with ID %d.", id));
+				}
+			}
+		} catch (SQLException e) {
+			throw new TransientDataAccessResourceException(e.getMessage(), e);
+		}
+	}
+
+	private List<byte[]> hmget(final long id) {
+		final var available = SafeEncoder.encode("available");
+		final var version = SafeEncoder.encode("version");
+
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				return jedis.hmget(this.getKey(id), available, version);
+			}
+		} else {
+			return this.jedisCluster.hmget(this.getKey(id), available, version);
+		}
+	}
+
+	private Object eval(final RedisScript script, final List<byte[]> keys, final List<byte[]> args) {
+		if (this.jedisPool != null) {
+			try (final var jedis = this.jedisPool.getResource()) {
+				return script.eval(jedis, keys, args);
+			}
+		} else {
+			return script.eval(this.jedisCluster, keys, args);
+		}
+	}
+
+	private Account toAccount(final long id, final List<?> values) {
+		return new Account(
+			id,
+			Long.parseLong(SafeEncoder.encode((byte[]) values.get(0))),
+			Long.parseLong(SafeEncoder.encode((byte[]) values.get(1)))
+		);
+	}
+
+	/**
+	 * Returns the journal of the account, the hash tag of its keys.
+	 */
+	int getJournal(final long id) {
+		return (int) Math.floorMod(id, (long) this.journals);
+	}
+
+	byte[] getKey(final long id) {
+		return SafeEncoder.encode(String.format("{account-wb:%d}:%d", this.getJournal(id), id));
+	}
+
+	byte[] getJournalKey(final int journal) {
+		return SafeEncoder.encode(String.format("{account-wb:%d}:journal", journal));
+	}
+
+	private byte[] getTrimsKey(final int journal) {
+		return SafeEncoder.encode(String.format("{account-wb:%d}:trims", journal));
+	}
+
+	private record JournalEntry(long id, long amount, long version, long millis) {
+
+		static JournalEntry parse(final String line) {
+			final var fields = line.split(":");
+			return new JournalEntry(
+				Long.parseLong(fields[0]),
+				Long.parseLong(fields[1]),
+				Long.parseLong(fields[2]),
+				Long.parseLong(fields[3])
+			);
+		}
+
+	}
+
+}
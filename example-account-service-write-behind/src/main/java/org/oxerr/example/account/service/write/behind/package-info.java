@@ -0,0 +1,5 @@
+/**
+ * Account service implementation acknowledging writes from Redis and
+ * persisting them via JDBC asynchronously.
+ */
+package org.oxerr.example.account.service.write.behind;
@@ -0,0 +1,244 @@
+package org.oxerr.example.account.service.write.behind;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.oxerr.example.account.Account;
+
+import com.github.fppt.jedismock.RedisServer;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Against an in-memory H2 database and an in-process Redis stand-in, the
+ * database taken down to leave the journal pending.
+ */
+class WriteBehindAccountServiceTest {
+
+	private static final int JOURNALS = 4;
+
+	private static final int ADDS = 10;
+
+	private static RedisServer redisServer;
+
+	private static JedisPool jedisPool;
+
+	private JdbcDataSource dataSource;
+
+	private volatile boolean down;
+
+	private DataSource downableDataSource;
+
+	private final List<WriteBehindAccountService> accountServices = new ArrayList<>();
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		redisServer = RedisServer.newRedisServer().start();
+		jedisPool = new JedisPool(redisServer.getHost(), redisServer.getBindPort());
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		jedisPool.close();
+		redisServer.stop();
+	}
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		try (final var jedis = jedisPool.getResource()) {
+			jedis.flushAll();
+		}
+
+		this.dataSource = new JdbcDataSource();
+		this.dataSource.setURL("jdbc:h2:mem:write-behind;DB_CLOSE_DELAY=-1");
+
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var stmt = conn.createStatement();
+		) {
+			stmt.execute("create table if not exists account (id bigint primary key, available bigint not null, version bigint not null)");
+			stmt.execute("delete from account");
+			stmt.execute("insert into account (id, available, version) values (1, 100, 0), (2, 100, 0)");
+		}
+
+		this.down = false;
+		this.downableDataSource = (DataSource) Proxy.newProxyInstance(
+			DataSource.class.getClassLoader(),
+			new Class<?>[] { DataSource.class },
+			(proxy, method, args) -> {
+				if (this.down && method.getName().equals("getConnection")) {
+					throw new SQLException("Database is down.");
+				}
+
+				try {
+					return method.invoke(this.dataSource, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.down = false;
+		this.accountServices.forEach(WriteBehindAccountService::close);
+	}
+
+	@Test
+	void testReplay() throws SQLException {
+		final var crashed = this.newAccountService(this.downableDataSource);
+		this.addWhileDown(crashed);
+
+		assertEquals(2 * ADDS, crashed.getPending());
+
+		try (final var jedis = jedisPool.getResource()) {
+			assertEquals(ADDS, jedis.llen(crashed.getJournalKey(crashed.getJournal(1))));
+			assertEquals(ADDS, jedis.llen(crashed.getJournalKey(crashed.getJournal(2))));
+		}
+
+		// Not closed, as if crashed, the journal is replayed by the next run.
+		final var replayed = this.newAccountService(this.dataSource);
+		replayed.close();
+
+		assertEquals(0, replayed.getPending());
+		assertEquals(new Account(1, 100 + ADDS, ADDS), this.getViaJDBC(1));
+		assertEquals(new Account(2, 100 - ADDS, ADDS), this.getViaJDBC(2));
+		assertEquals(this.getViaJDBC(1), replayed.get(1));
+	}
+
+	/**
+	 * The entries flushed but not trimmed, as if the flusher crashed in
+	 * between, are not applied again.
+	 */
+	@Test
+	void testReplayFlushed() throws SQLException {
+		final var accountService = this.newAccountService(this.downableDataSource);
+		this.addWhileDown(accountService);
+
+		final List<byte[]> lines = new ArrayList<>();
+		try (final var jedis = jedisPool.getResource()) {
+			for (int journal = 0; journal < JOURNALS; journal++) {
+				final var key = accountService.getJournalKey(journal);
+				lines.addAll(jedis.lrange(key, 0, -1));
+			}
+		}
+
+		this.down = false;
+		accountService.close();
+		assertEquals(new Account(1, 100 + ADDS, ADDS), this.getViaJDBC(1));
+
+		try (final var jedis = jedisPool.getResource()) {
+			for (final var line : lines) {
+				final var id = Long.parseLong(new String(line).split(":")[0]);
+				jedis.rpush(accountService.getJournalKey(accountService.getJournal(id)), line);
+			}
+		}
+
+		final var replayed = this.newAccountService(this.dataSource);
+		replayed.close();
+
+		assertEquals(0, replayed.getPending());
+		assertEquals(new Account(1, 100 + ADDS, ADDS), this.getViaJDBC(1));
+		assertEquals(new Account(2, 100 - ADDS, ADDS), this.getViaJDBC(2));
+	}
+
+	/**
+	 * An account seeded again while its entries are pending goes on from
+	 * them, instead of reusing their versions.
+	 */
+	@Test
+	void testSeedWithPendingJournal() throws SQLException {
+		final var accountService = this.newAccountService(this.downableDataSource);
+		this.addWhileDown(accountService);
+
+		try (final var jedis = jedisPool.getResource()) {
+			jedis.del(accountService.getKey(1));
+		}
+
+		this.down = false;
+
+		assertEquals(new Account(1, 100 + ADDS, ADDS), accountService.get(1));
+		assertEquals(new Account(1, 100 + ADDS + 1, ADDS + 1), accountService.addAmount(1, 1));
+
+		accountService.close();
+
+		assertEquals(0, accountService.getPending());
+		assertEquals(new Account(1, 100 + ADDS + 1, ADDS + 1), this.getViaJDBC(1));
+		assertEquals(new Account(2, 100 - ADDS, ADDS), this.getViaJDBC(2));
+	}
+
+	@Test
+	void testAddAmountAfterClose() throws SQLException {
+		final var accountService = this.newAccountService(this.dataSource);
+		accountService.addAmount(1, 1);
+		accountService.close();
+
+		assertThrows(IllegalStateException.class, () -> accountService.addAmount(1, 1));
+		assertThrows(IllegalStateException.class, () -> accountService.withdraw(1, -1, 0));
+		assertEquals(0, accountService.getPending());
+		assertEquals(new Account(1, 101, 1), this.getViaJDBC(1));
+	}
+
+	/**
+	 * Seeds the accounts, then adds to them with the database down, so the
+	 * entries are left in the journals.
+	 */
+	private void addWhileDown(final WriteBehindAccountService accountService) {
+		accountService.get(1);
+		accountService.get(2);
+
+		this.down = true;
+
+		for (int i = 0; i < ADDS; i++) {
+			accountService.addAmount(1, 1);
+			accountService.addAmount(2, -1);
+		}
+	}
+
+	private WriteBehindAccountService newAccountService(final DataSource dataSource) {
+		// Flushed when started and closed only.
+		final var accountService = new WriteBehindAccountService(
+			dataSource,
+			jedisPool,
+			null,
+			Duration.ofHours(1),
+			3,
+			1_000,
+			JOURNALS
+		);
+		this.accountServices.add(accountService);
+		return accountService;
+	}
+
+	private Account getViaJDBC(final long id) throws SQLException {
+		try (
+			final var conn = this.dataSource.getConnection();
+			final var select = conn.prepareStatement("select available, version from account where id = ?");
+		) {
+			select.setLong(1, id);
+
+			try (final var rs = select.executeQuery()) {
+				rs.next();
+				return new Account(id, rs.getLong("available"), rs.getLong("version"));
+			}
+		}
+	}
+
+}
@@ -1,11 +1,36 @@
 package org.oxerr.example.account.service;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
 import org.oxerr.example.account.Account;
 
 public interface AccountService {
 
 	Account get(final long id);
 
+	/**
+	 * Gets the accounts with the specified IDs.
+	 *
+	 * @param ids the IDs of the accounts.
+	 * @return the accounts, in the order of the IDs.
+	 */
+	default List<Account> getAll(final long... ids) {
+		return LongStream.of(ids).mapToObj(this::get).collect(Collectors.toList());
+	}
+
 	Account addAmount(final long id, final long amount);
 
+	/**
+	 * Adds the amount, usually negative, unless the available would fall
+	 * below the floor.
+	 *
+	 * @param floor the min available after the amount added.
+	 * @return the account after updated.
+	 * @throws InsufficientAvailableException if {@code available + amount}
+	 * would be less than the floor.
+	 */
+	Account withdraw(final long id, final long amount, final long floor);
+
 }
@@ -0,0 +1,29 @@
+package org.oxerr.example.account.service;
+
+import java.util.List;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Thrown when the accounts have been written, but a step after, such as
+ * caching them, failed. The write should not be retried.
+ */
+public class AccountWrittenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient List<Account> accounts;
+
+	public AccountWrittenException(final List<Account> accounts, final Throwable cause) {
+		super(String.format("Accounts written, but failed after: %s", cause.getMessage()), cause);
+		this.accounts = List.copyOf(accounts);
+	}
+
+	/**
+	 * Returns the accounts as written.
+	 */
+	public List<Account> getAccounts() {
+		return accounts;
+	}
+
+}
@@ -0,0 +1,13 @@
+package org.oxerr.example.account.service;
+
+import java.util.concurrent.CompletionStage;
+
+import org.oxerr.example.account.Account;
+
+public interface AsyncAccountService {
+
+	CompletionStage<Account> get(final long id);
+
+	CompletionStage<Account> addAmount(final long id, final long amount);
+
+}
@@ -0,0 +1,40 @@
+package org.oxerr.example.account.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Runs a blocking {@link AccountService} on an executor.
+ *
+ * <p>The executor bounds the number of in-flight blocking calls, it should
+ * not be larger than the connection pool. On a runtime with virtual threads,
+ * a virtual thread per task executor can be used instead.</p>
+ */
+public class ExecutorAsyncAccountService implements AsyncAccountService {
+
+	private final AccountService accountService;
+
+	private final Executor executor;
+
+	public ExecutorAsyncAccountService(
+		final AccountService accountService,
+		final Executor executor
+	) {
+		this.accountService = accountService;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletionStage<Account> get(final long id) {
+		return CompletableFuture.supplyAsync(() -> this.accountService.get(id), this.executor);
+	}
+
+	@Override
+	public CompletionStage<Account> addAmount(final long id, final long amount) {
+		return CompletableFuture.supplyAsync(() -> this.accountService.addAmount(id, amount), this.executor);
+	}
+
+}
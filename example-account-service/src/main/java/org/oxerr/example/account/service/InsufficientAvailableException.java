@@ -0,0 +1,44 @@
+package org.oxerr.example.account.service;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Thrown when adding an amount would take the available of an account below
+ * the floor. Nothing has been written.
+ */
+public class InsufficientAvailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Account account;
+
+	private final long amount;
+
+	private final long floor;
+
+	public InsufficientAvailableException(final Account account, final long amount, final long floor) {
+		super(String.format(
+			"Insufficient available of account with ID %d: %d + %d < %d.",
+			account.id(), account.available(), amount, floor
+		));
+		this.account = account;
+		this.amount = amount;
+		this.floor = floor;
+	}
+
+	/**
+	 * Returns the account as read when the amount was rejected.
+	 */
+	public Account getAccount() {
+		return account;
+	}
+
+	public long getAmount() {
+		return amount;
+	}
+
+	public long getFloor() {
+		return floor;
+	}
+
+}
@@ -0,0 +1,94 @@
+package org.oxerr.example.account.service;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.oxerr.example.account.Account;
+
+/**
+ * Serializes the writers of the same account in this JVM before they reach
+ * the underlying {@link AccountService}.
+ *
+ * <p>The writers of an account wait on an in-memory lock, instead of spinning
+ * on optimistic retries, or holding a connection while waiting on a row lock.
+ * The accounts are mapped to a fixed number of lock stripes, so different
+ * accounts may share a stripe. Reads are not locked.</p>
+ *
+ * <p>Writers in other JVMs are not serialized, the underlying service should
+ * still be safe under concurrent writes.</p>
+ */
+public class StripedLockAccountService implements AccountService {
+
+	private static final int DEFAULT_STRIPES = 1_024;
+
+	private final AccountService accountService;
+
+	private final Lock[] locks;
+
+	private final int mask;
+
+	public StripedLockAccountService(final AccountService accountService) {
+		this(accountService, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes the number of locks, rounded up to a power of two.
+	 */
+	public StripedLockAccountService(final AccountService accountService, final int stripes) {
+		if (stripes < 1 || stripes > 1 << 30) {
+			throw new IllegalArgumentException("Stripes should be between 1 and 2^30.");
+		}
+
+		final int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+
+		this.accountService = accountService;
+		this.locks = new Lock[size];
+		this.mask = size - 1;
+
+		for (int i = 0; i < size; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public Account get(final long id) {
+		return this.accountService.get(id);
+	}
+
+	@Override
+	public List<Account> getAll(final long... ids) {
+		return this.accountService.getAll(ids);
+	}
+
+	@Override
+	public Account addAmount(final long id, final long amount) {
+		final var lock = this.getLock(id);
+
+		lock.lock();
+		try {
+			return this.accountService.addAmount(id, amount);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Account withdraw(final long id, final long amount, final long floor) {
+		final var lock = this.getLock(id);
+
+		lock.lock();
+		try {
+			return this.accountService.withdraw(id, amount, floor);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Lock getLock(final long id) {
+		// Spreads the sequential IDs over the stripes.
+		final long h = id * 0x9E3779B97F4A7C15L;
+		return this.locks[(int) (h ^ (h >>> 32)) & this.mask];
+	}
+
+}
@@ -0,0 +1,309 @@
+package org.oxerr.example.account;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+/**
+ * Loads accounts with zero available and version in bulk, split into ID
+ * ranges loaded in parallel, each over its own connection.
+ *
+ * <p>The rows are generated into a stream, never held in memory, and loaded
+ * by {@code COPY ... FROM STDIN} on PostgreSQL, by
+ * {@code LOAD DATA LOCAL INFILE} on MySQL, which needs the data source of
+ * {@link MySQLDataSourceFactory#getLoaderDataSource()} on the client and
+ * {@code local_infile=1} on the server, and by batched inserts on other databases.</p>
+ *
+ * <p>The ranges which are fully loaded already are skipped, the existing
+ * accounts of the partially loaded ones are kept, so an interrupted load can
+ * be run again.</p>
+ */
+public class AccountLoader {
+
+	static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	private static final long DEFAULT_RANGE_SIZE = 100_000;
+
+	private final Logger log = LogManager.getLogger(AccountLoader.class);
+
+	private final DataSource dataSource;
+
+	private final int parallelism;
+
+	private final long rangeSize;
+
+	public AccountLoader(final DataSource dataSource) {
+		this(dataSource, DEFAULT_PARALLELISM, DEFAULT_RANGE_SIZE);
+	}
+
+	/**
+	 * @param parallelism the number of ranges loaded at the same time, should
+	 * not be larger than the connection pool.
+	 * @param rangeSize the number of accounts per range and transaction.
+	 */
+	public AccountLoader(final DataSource dataSource, final int parallelism, final long rangeSize) {
+		if (parallelism < 1 || rangeSize < 1) {
+			throw new IllegalArgumentException("Parallelism and range size should be positive.");
+		}
+
+		this.dataSource = dataSource;
+		this.parallelism = parallelism;
+		this.rangeSize = rangeSize;
+	}
+
+	/**
+	 * Loads the accounts with IDs from {@code from} to {@code to}, inclusive.
+	 *
+	 * @return the number of accounts loaded, excluding the existing ones.
+	 * @throws DataAccessResourceFailureException if any range failed, after
+	 * the other ranges have been loaded, with the failures suppressed.
+	 */
+	public long load(final long from, final long to) {
+		final long total = to - from + 1;
+		final var loaded = new AtomicLong();
+		final var done = new AtomicLong();
+		final long start = System.nanoTime();
+
+		final var executor = Executors.newFixedThreadPool(this.parallelism);
+		final List<Future<Long>> futures = new ArrayList<>();
+
+		try {
+			for (long rangeFrom = from; rangeFrom <= to; rangeFrom += this.rangeSize) {
+				final long rangeTo = Math.min(to, rangeFrom + this.rangeSize - 1);
+				final long f = rangeFrom;
+
+				futures.add(executor.submit(() -> {
+					final long count = this.load(f, rangeTo, loaded);
+					final long d = done.addAndGet(rangeTo - f + 1);
+					log.info("Loaded {}/{} accounts, {} new, {} ms.", d, total, loaded.get(), (System.nanoTime() - start) / 1_000_000);
+					return count;
+				}));
+			}
+
+			final List<Throwable> failures = new ArrayList<>();
+
+			for (final var future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					failures.add(e.getCause());
+				}
+			}
+
+			if (!failures.isEmpty()) {
+				final var e = new DataAccessResourceFailureException(
+					String.format("Loading %d of %d account ranges failed.", failures.size(), futures.size())
+				);
+				failures.forEach(e::addSuppressed);
+				throw e;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Loading accounts interrupted.", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return loaded.get();
+	}
+
+	private long load(final long from, final long to, final AtomicLong loaded) throws SQLException, IOException {
+		try (final var conn = this.dataSource.getConnection()) {
+			final long existing = this.count(conn, from, to);
+			if (existing == to - from + 1) {
+				log.debug("Accounts {}-{} exist, skipping.", from, to);
+				return 0;
+			}
+
+			final var autoCommit = conn.getAutoCommit();
+
+			if (autoCommit) {
+				conn.setAutoCommit(false);
+			}
+
+			try {
+				final long count = switch (Dialect.of(conn.getMetaData().getDatabaseProductName())) {
+					case POSTGRESQL -> this.copy(conn, from, to, existing > 0);
+					case MYSQL -> this.loadData(conn, from, to);
+					case OTHER -> this.insert(conn, from, to, existing > 0);
+				};
+
+				conn.commit();
+				loaded.addAndGet(count);
+				return count;
+			} catch (SQLException | IOException | RuntimeException e) {
+				conn.rollback();
+				log.warn("Loading accounts {}-{} failed: {}", from, to, e.getMessage());
+				throw e;
+			} finally {
+				if (autoCommit) {
+					conn.setAutoCommit(true);
+				}
+			}
+		}
+	}
+
+	private long count(final Connection conn, final long from, final long to) throws SQLException {
+		try (final var select = conn.prepareStatement("select count(*) from account where id between ? and ?")) {
+			select.setLong(1, from);
+			select.setLong(2, to);
+
+			try (final var rs = select.executeQuery()) {
+				rs.next();
+				return rs.getLong(1);
+			}
+		}
+	}
+
+	/**
+	 * COPY fails on any existing row, so a partially loaded range is copied
+	 * into a temporary table first, then inserted skipping the existing rows.
+	 */
+	private long copy(final Connection conn, final long from, final long to, final boolean partial) throws SQLException, IOException {
+		final var copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+
+		if (!partial) {
+			return copyManager.copyIn("copy account(id, available, version) from stdin with (format csv)", new AccountRows(from, to));
+		}
+
+		try (final var statement = conn.createStatement()) {
+			statement.execute("create temporary table account_load (like account) on commit drop");
+			copyManager.copyIn("copy account_load(id, available, version) from stdin with (format csv)", new AccountRows(from, to));
+			return statement.executeUpdate("insert into account select * from account_load on conflict do nothing");
+		}
+	}
+
+	private long loadData(final Connection conn, final long from, final long to) throws SQLException {
+		try (final var statement = conn.createStatement()) {
+			statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new AccountRows(from, to));
+			return statement.executeLargeUpdate(
+				"load data local infile 'accounts.csv' ignore into table account"
+				+ " fields terminated by ',' lines terminated by '\\n' (id, available, version)"
+			);
+		}
+	}
+
+	private long insert(final Connection conn, final long from, final long to, final boolean partial) throws SQLException {
+		final var insertSql = partial
+			? "insert into account(id, available, version) select ?, 0, 0 where not exists (select 1 from account where id = ?)"
+			: "insert into account(id, available, version) values(?, 0, 0)";
+
+		long count = 0;
+
+		try (final var insert = conn.prepareStatement(insertSql)) {
+			for (long id = from; id <= to; id++) {
+				insert.setLong(1, id);
+				if (partial) {
+					insert.setLong(2, id);
+				}
+				insert.addBatch();
+
+				if ((id - from + 1) % Short.MAX_VALUE == 0 || id == to) {
+					for (final long c : insert.executeLargeBatch()) {
+						count += Math.max(c, 0);
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private enum Dialect {
+
+		POSTGRESQL, MYSQL, OTHER;
+
+		static Dialect of(final String databaseProductName) {
+			final var name = databaseProductName.toLowerCase(Locale.ROOT);
+
+			if (name.contains("postgresql")) {
+				return POSTGRESQL;
+			} else if (name.contains("mysql") || name.contains("mariadb")) {
+				return MYSQL;
+			} else {
+				return OTHER;
+			}
+		}
+
+	}
+
+	/**
+	 * Generates the CSV rows of the accounts on the fly.
+	 */
+	private static class AccountRows extends InputStream {
+
+		private final long to;
+
+		private long next;
+
+		private byte[] row = new byte[0];
+
+		private int position;
+
+		AccountRows(final long from, final long to) {
+			this.next = from;
+			this.to = to;
+		}
+
+		@Override
+		public int read() {
+			if (!this.fill()) {
+				return -1;
+			}
+
+			return this.row[this.position++];
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+
+			int n = 0;
+
+			while (n < len && this.fill()) {
+				final int size = Math.min(len - n, this.row.length - this.position);
+				System.arraycopy(this.row, this.position, b, off + n, size);
+				this.position += size;
+				n += size;
+			}
+
+			return n == 0 ? -1 : n;
+		}
+
+		private boolean fill() {
+			if (this.position < this.row.length) {
+				return true;
+			}
+
+			if (this.next > this.to) {
+				return false;
+			}
+
+			this.row = (this.next++ + ",0,0\n").getBytes(StandardCharsets.US_ASCII);
+			this.position = 0;
+			return true;
+		}
+
+	}
+
+}
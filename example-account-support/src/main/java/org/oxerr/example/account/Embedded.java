@@ -0,0 +1,74 @@
+package org.oxerr.example.account;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.zaxxer.hikari.HikariConfig;
+
+/**
+ * Runs the benchmarks and the load driver without services, against an
+ * in-memory H2 database in the compatibility mode of MySQL or PostgreSQL, and
+ * an in-process Redis stand-in, which is not a cluster.
+ *
+ * <p>Enabled by {@code -Dembedded=true}, which is passed on to the forked
+ * JVMs, and needs the jar packaged by the {@code embedded} profile. The
+ * threads of the Redis stand-in are not daemons, so a short
+ * {@code -Djmh.shutdownTimeout} saves waiting for them at the end of each
+ * fork.</p>
+ *
+ * <p>The numbers are only comparable to each other, to catch regressions of
+ * the cache and the service logic, not to the ones of the real services.
+ * The Redis stand-in does not disable Nagle's algorithm, so its pipelines,
+ * such as of the gets of many accounts and the transfers, take tens of
+ * milliseconds.</p>
+ */
+public final class Embedded {
+
+	private static RedisServer redisServer;
+
+	private Embedded() {
+	}
+
+	public static boolean isEnabled() {
+		return Boolean.getBoolean("embedded");
+	}
+
+	/**
+	 * @param mode the compatibility mode of H2, such as {@code MySQL} or
+	 * {@code PostgreSQL}.
+	 */
+	static HikariConfig getHikariConfig(final String mode) {
+		final var poolSize = 100;
+		final var minIdle = 10;
+
+		var jdbcUrl = String.format(
+			"jdbc:h2:mem:example-%s;MODE=%s;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:/embedded-schema.sql'",
+			mode.toLowerCase(),
+			mode
+		);
+
+		var hikariConfig = new HikariConfig();
+		hikariConfig.setJdbcUrl(jdbcUrl);
+		hikariConfig.setMaximumPoolSize(poolSize);
+		hikariConfig.setMinimumIdle(minIdle);
+		return hikariConfig;
+	}
+
+	/**
+	 * Returns the Redis stand-in, started on a free port on first use, shared
+	 * by all the benchmarks of the JVM.
+	 */
+	static synchronized RedisServer getRedisServer() {
+		if (redisServer == null) {
+			try {
+				redisServer = RedisServer.newRedisServer().start();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return redisServer;
+	}
+
+}
@@ -0,0 +1,44 @@
+package org.oxerr.example.account;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads need Java 21 or later, they are looked up reflectively so
+ * the benchmarks still build and run on the baseline Java version.
+ *
+ * <p>Run with {@code -Djdk.tracePinnedThreads=short} to print the stack
+ * traces where a virtual thread is pinned to its carrier, such as
+ * synchronized blocks in the JDBC driver or connection pool.</p>
+ */
+public class ExecutorServiceFactory {
+
+	public ExecutorService getPlatformThreadExecutorService(final int threads) {
+		return Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Returns true if the running Java has virtual threads.
+	 */
+	public boolean isVirtualThreadSupported() {
+		return Runtime.version().feature() >= 21;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException if the running Java has no
+	 * virtual threads.
+	 */
+	public ExecutorService getVirtualThreadExecutorService() {
+		if (!this.isVirtualThreadSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on Java " + Runtime.version() + ".");
+		}
+
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
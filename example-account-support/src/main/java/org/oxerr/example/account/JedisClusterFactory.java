@@ -3,10 +3,19 @@ package org.oxerr.example.account;
 import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisDataException;
 
 public class JedisClusterFactory {
 
+	/**
+	 * @throws JedisDataException if the Redis is not a cluster, such as in the
+	 * embedded mode.
+	 */
 	public JedisCluster getJedisCluster() {
+		if (Embedded.isEnabled()) {
+			throw new JedisDataException("The embedded Redis is not a cluster.");
+		}
+
 		final var poolSize = 100;
 		final var minIdle = 100;
 
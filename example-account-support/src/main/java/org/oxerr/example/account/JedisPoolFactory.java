@@ -16,6 +16,11 @@ public class JedisPoolFactory {
 		cfg.setMaxTotal(poolSize);
 		cfg.setMinIdle(minIdle);
 
+		if (Embedded.isEnabled()) {
+			final var redisServer = Embedded.getRedisServer();
+			return new JedisPool(cfg, redisServer.getHost(), redisServer.getBindPort());
+		}
+
 		return new JedisPool(cfg, host, port);
 	}
 
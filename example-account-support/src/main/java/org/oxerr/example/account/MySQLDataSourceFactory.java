@@ -0,0 +1,118 @@
+package org.oxerr.example.account;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * $ mysql -u root -p
+ *
+ * CREATE DATABASE example;
+ * CREATE USER 'example'@'localhost' IDENTIFIED BY 'G9^zqkNv3*XA8i2#';
+ * -- ALTER USER 'example'@'localhost' IDENTIFIED BY 'G9^zqkNv3*XA8i2#';
+ * GRANT SELECT, INSERT, UPDATE, DELETE, CREATE, INDEX, DROP, ALTER, CREATE TEMPORARY TABLES, LOCK TABLES ON example.* TO 'example'@'localhost';
+ *
+ * USE example;
+ * CREATE TABLE `account` (
+ *   `id` bigint unsigned NOT NULL,
+ *   `available` bigint NOT NULL,
+ *   `version` bigint unsigned NOT NULL,
+ *   PRIMARY KEY (`id`)
+ * ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+ *
+ * CREATE TABLE `account_shard` (
+ *   `id` bigint unsigned NOT NULL,
+ *   `shard` int unsigned NOT NULL,
+ *   `available` bigint NOT NULL,
+ *   `version` bigint unsigned NOT NULL,
+ *   PRIMARY KEY (`id`, `shard`)
+ * ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+ *
+ * -- SHOW VARIABLES LIKE "max_connections";
+ * -- SET GLOBAL max_connections = 500;
+ * -- SHOW STATUS WHERE `variable_name` = 'Threads_connected';
+ * -- SHOW PROCESSLIST;
+ */
+public class MySQLDataSourceFactory {
+
+	private final Logger log = LogManager.getLogger(MySQLDataSourceFactory.class);
+
+	public HikariDataSource getDataSource() {
+		return new HikariDataSource(this.getHikariConfig());
+	}
+
+	/**
+	 * Returns a data source which sends several statements in one call, only
+	 * for the returning service, which selects the row after its update in
+	 * the same round trip. The other data sources do not allow it, as any SQL
+	 * injection could then run statements of its own.
+	 */
+	public HikariDataSource getMultiQueriesDataSource() {
+		final var hikariConfig = this.getHikariConfig();
+
+		if (!Embedded.isEnabled()) {
+			hikariConfig.addDataSourceProperty("allowMultiQueries", "true");
+		}
+
+		return new HikariDataSource(hikariConfig);
+	}
+
+	/**
+	 * Returns a data source which streams local files to the server, only for
+	 * the account loader, sized to its parallelism. The other data sources do
+	 * not allow it, as the server could then read any file of the client.
+	 */
+	public HikariDataSource getLoaderDataSource() {
+		final var hikariConfig = this.getHikariConfig();
+		hikariConfig.setMaximumPoolSize(AccountLoader.DEFAULT_PARALLELISM);
+		hikariConfig.setMinimumIdle(0);
+
+		if (!Embedded.isEnabled()) {
+			// Streams the rows of the account loader, the server needs local_infile=1.
+			hikariConfig.addDataSourceProperty("allowLoadLocalInfile", "true");
+		}
+
+		return new HikariDataSource(hikariConfig);
+	}
+
+	public HikariConfig getHikariConfig() {
+		if (Embedded.isEnabled()) {
+			return Embedded.getHikariConfig("MySQL");
+		}
+
+		final var poolSize = 100;
+		final var minIdle = 100;
+
+		var jdbcUrl = "jdbc:mysql://localhost/example";
+
+		var hikariConfig = new HikariConfig();
+		hikariConfig.setJdbcUrl(jdbcUrl);
+		hikariConfig.setUsername("example");
+		hikariConfig.setPassword("G9^zqkNv3*XA8i2#");
+		hikariConfig.setMaximumPoolSize(poolSize);
+		hikariConfig.setMinimumIdle(minIdle);
+
+		// Streams the statements with a fetch size, such as of the cache warmer, with a cursor.
+		hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+
+		// Prepares the statements on the server once per connection.
+		hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+		hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+		hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
+		hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+		hikariConfig.addDataSourceProperty("cacheResultSetMetadata", "true");
+
+		// Skips the round trips of setting the auto-commit which is already set.
+		hikariConfig.addDataSourceProperty("useLocalSessionState", "true");
+
+		hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+		log.trace("hikariConfig: {}", () -> ToStringBuilder.reflectionToString(hikariConfig, ToStringStyle.MULTI_LINE_STYLE));
+
+		return hikariConfig;
+	}
+
+}
@@ -25,6 +25,14 @@ import com.zaxxer.hikari.HikariDataSource;
  * 	CONSTRAINT account_pk PRIMARY KEY (id)
  * );
  *
+ * CREATE TABLE account_shard (
+ * 	id int8 NOT NULL,
+ * 	shard int4 NOT NULL,
+ * 	available int8 NOT NULL,
+ * 	"version" int8 NOT NULL,
+ * 	CONSTRAINT account_shard_pk PRIMARY KEY (id, shard)
+ * );
+ *
  * -- SHOW max_connections;
  */
 public class PostreSQLDataSourceFactory {
@@ -32,6 +40,24 @@ public class PostreSQLDataSourceFactory {
 	private final Logger log = LogManager.getLogger(PostreSQLDataSourceFactory.class);
 
 	public HikariDataSource getDataSource() {
+		return new HikariDataSource(this.getHikariConfig());
+	}
+
+	/**
+	 * Returns a data source for the account loader, sized to its parallelism.
+	 */
+	public HikariDataSource getLoaderDataSource() {
+		final var hikariConfig = this.getHikariConfig();
+		hikariConfig.setMaximumPoolSize(AccountLoader.DEFAULT_PARALLELISM);
+		hikariConfig.setMinimumIdle(0);
+		return new HikariDataSource(hikariConfig);
+	}
+
+	public HikariConfig getHikariConfig() {
+		if (Embedded.isEnabled()) {
+			return Embedded.getHikariConfig("PostgreSQL");
+		}
+
 		final var poolSize = 100;
 		final var minIdle = 100;
 
@@ -43,9 +69,16 @@ public class PostreSQLDataSourceFactory {
 		hikariConfig.setPassword("G9^zqkNv3*XA8i2#");
 		hikariConfig.setMaximumPoolSize(poolSize);
 		hikariConfig.setMinimumIdle(minIdle);
+
+		// Prepares the statements on the server from their first execution,
+		// cached per connection.
+		hikariConfig.addDataSourceProperty("prepareThreshold", "1");
+		hikariConfig.addDataSourceProperty("preparedStatementCacheQueries", "256");
+
+		hikariConfig.addDataSourceProperty("reWriteBatchedInserts", "true");
 		log.trace("hikariConfig: {}", () -> ToStringBuilder.reflectionToString(hikariConfig, ToStringStyle.MULTI_LINE_STYLE));
 
-		return new HikariDataSource(hikariConfig);
+		return hikariConfig;
 	}
 
 }
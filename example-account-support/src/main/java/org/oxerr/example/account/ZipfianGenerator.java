@@ -0,0 +1,66 @@
+package org.oxerr.example.account;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates IDs from 1 to n in a Zipfian distribution, ID 1 being the most
+ * popular, as described in "Quickly Generating Billion-Record Synthetic
+ * Databases" by Gray et al.
+ */
+public class ZipfianGenerator {
+
+	/**
+	 * The skew of YCSB.
+	 */
+	public static final double DEFAULT_THETA = 0.99;
+
+	private final long n;
+
+	private final double theta;
+
+	private final double alpha;
+
+	private final double zetan;
+
+	private final double eta;
+
+	public ZipfianGenerator(final long n) {
+		this(n, DEFAULT_THETA);
+	}
+
+	public ZipfianGenerator(final long n, final double theta) {
+		if (n < 2) {
+			throw new IllegalArgumentException("N should be at least 2.");
+		}
+
+		this.n = n;
+		this.theta = theta;
+		this.alpha = 1.0 / (1.0 - theta);
+		this.zetan = zeta(n, theta);
+		this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / this.zetan);
+	}
+
+	public long next() {
+		final double u = ThreadLocalRandom.current().nextDouble();
+		final double uz = u * this.zetan;
+
+		if (uz < 1.0) {
+			return 1;
+		}
+
+		if (uz < 1.0 + Math.pow(0.5, this.theta)) {
+			return 2;
+		}
+
+		return 1 + Math.min(this.n - 1, (long) (this.n * Math.pow(this.eta * u - this.eta + 1, this.alpha)));
+	}
+
+	private static double zeta(final long n, final double theta) {
+		double sum = 0;
+		for (long i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS account (
+	id BIGINT NOT NULL,
+	available BIGINT NOT NULL,
+	version BIGINT NOT NULL,
+	CONSTRAINT account_pk PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS account_shard (
+	id BIGINT NOT NULL,
+	shard INT NOT NULL,
+	available BIGINT NOT NULL,
+	version BIGINT NOT NULL,
+	CONSTRAINT account_shard_pk PRIMARY KEY (id, shard)
+);